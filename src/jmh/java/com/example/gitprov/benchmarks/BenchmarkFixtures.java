@@ -0,0 +1,105 @@
+package com.example.gitprov.benchmarks;
+
+import com.example.gitprov.SyntheticCommitSource;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.User;
+import org.openprovenance.prov.interop.InteropFramework;
+import org.openprovenance.prov.model.Document;
+import org.springframework.test.util.ReflectionTestUtils;
+import ro.uaic.info.gitprov.models.GenerationState;
+import ro.uaic.info.gitprov.services.*;
+
+import java.io.IOException;
+
+/**
+ * Builds the services measured by the benchmarks the way the application context does, configured with the defaults
+ * of application.properties, and the documents of synthetic histories.
+ */
+public class BenchmarkFixtures {
+
+	public static final Repository REPOSITORY = new Repository().setName("synthetic").setOwner(new User().setLogin("benchmarks"));
+
+	public static final String DOCUMENT_NAME = "benchmarks/synthetic";
+
+	public static final String PROVENANCE_NS = "http://localhost:8080/repos/owner/benchmarks/synthetic#";
+
+	/**
+	 * The number of contributors of the synthetic histories.
+	 */
+	public static final int CONTRIBUTORS = 20;
+
+	/**
+	 * Gets a provenance service reading every repository from a synthetic history
+	 *
+	 * @param commits        the number of commits
+	 * @param filesPerCommit the number of files changed by every commit
+	 * @return the service
+	 */
+	public static ProvenanceService newProvenanceService(int commits, int filesPerCommit) {
+		ProvenanceService provenanceService = new ProvenanceService();
+		ReflectionTestUtils.setField(provenanceService, "commitSourceFactory", new CommitSourceFactory() {
+			@Override
+			public CommitSource getCommitSource(Repository repository) {
+				return new SyntheticCommitSource(commits, filesPerCommit, CONTRIBUTORS);
+			}
+		});
+		return provenanceService;
+	}
+
+	/**
+	 * Builds the provenance records of a synthetic history
+	 *
+	 * @param commits        the number of commits
+	 * @param filesPerCommit the number of files changed by every commit
+	 * @return the document
+	 * @throws IOException io exception
+	 */
+	public static Document buildDocument(int commits, int filesPerCommit) throws IOException {
+		try (SyntheticCommitSource commitSource = new SyntheticCommitSource(commits, filesPerCommit, CONTRIBUTORS)) {
+			ProvenanceBuilder builder = new ProvenanceBuilder(InteropFramework.newXMLProvFactory(), REPOSITORY.getOwner().getLogin(), REPOSITORY.getName(), PROVENANCE_NS, new GenerationState());
+			builder.processAllAgents(commitSource);
+
+			try (CommitFilesReader reader = commitSource.readFiles(commitSource.getCommitsSince(null))) {
+				while (reader.hasNext()) {
+					RepositoryCommit repositoryCommit = reader.next();
+					builder.processCommit(repositoryCommit, repositoryCommit.getFiles());
+				}
+			}
+
+			return builder.drainDocument();
+		}
+	}
+
+	/**
+	 * Gets a SPARQL service
+	 *
+	 * @param cacheResults whether the query results are cached
+	 * @return the service
+	 */
+	public static SparqlService newSparqlService(boolean cacheResults) {
+		SparqlService sparqlService = new SparqlService();
+		ReflectionTestUtils.setField(sparqlService, "queryCacheSize", 500);
+		ReflectionTestUtils.setField(sparqlService, "resultCacheSize", 1000);
+		ReflectionTestUtils.setField(sparqlService, "resultCacheMaxLength", cacheResults ? 1048576 : 0);
+		ReflectionTestUtils.setField(sparqlService, "queryTimeout", 30000L);
+		ReflectionTestUtils.setField(sparqlService, "maxResults", 100000L);
+		ReflectionTestUtils.setField(sparqlService, "maxConcurrentQueries", 4);
+		ReflectionTestUtils.setField(sparqlService, "maxWaitingQueries", 16);
+		ReflectionTestUtils.setField(sparqlService, "maxWait", 5000L);
+		sparqlService.init();
+		return sparqlService;
+	}
+
+	/**
+	 * Gets a store service, opening the store in the working directory
+	 *
+	 * @param sparqlService the SPARQL service of the store
+	 * @return the service
+	 */
+	public static StoreService newStoreService(SparqlService sparqlService) {
+		StoreService storeService = new StoreService();
+		ReflectionTestUtils.setField(storeService, "sparqlService", sparqlService);
+		return storeService;
+	}
+}
@@ -0,0 +1,43 @@
+package com.example.gitprov.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openprovenance.prov.model.Document;
+import ro.uaic.info.gitprov.services.ProvenanceService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the writing of a provenance document in every format served by the repository endpoint. The image and
+ * document formats are rendered by the dot program of Graphviz, which must be installed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DocumentBenchmark {
+
+	@Param({"1000"})
+	public int commits;
+
+	@Param({"text/provenance-notation", "application/x-turtle", "application/xml", "application/rdf+xml", "application/json",
+			"application/trig", "application/msword", "image/svg+xml", "image/png", "image/jpeg", "application/pdf"})
+	public String contentType;
+
+	private ProvenanceService provenanceService;
+
+	private Document document;
+
+	@Setup
+	public void setUp() throws IOException {
+		provenanceService = BenchmarkFixtures.newProvenanceService(commits, 10);
+		document = BenchmarkFixtures.buildDocument(commits, 10);
+	}
+
+	@Benchmark
+	public String getDocument() {
+		return provenanceService.getDocument(document, contentType);
+	}
+}
@@ -0,0 +1,56 @@
+package com.example.gitprov.benchmarks;
+
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.*;
+import ro.uaic.info.gitprov.services.ProvenanceService;
+import ro.uaic.info.gitprov.utils.JenaUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parsing of a turtle document into a model, as done when a document is stored, and the writing of a
+ * model in the formats of the store endpoints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JenaBenchmark {
+
+	@Param({"1000"})
+	public int commits;
+
+	private String turtle;
+
+	private Model model;
+
+	@Setup
+	public void setUp() throws IOException {
+		ProvenanceService provenanceService = BenchmarkFixtures.newProvenanceService(commits, 10);
+		turtle = provenanceService.getDocument(BenchmarkFixtures.buildDocument(commits, 10), "application/x-turtle");
+		model = JenaUtils.buildModelFromString(turtle);
+	}
+
+	@Benchmark
+	public Model buildModelFromString() throws IOException {
+		return JenaUtils.buildModelFromString(turtle);
+	}
+
+	@Benchmark
+	public String getDocumentFromModel(Format format) {
+		return JenaUtils.getDocumentFromModel(model, format.contentType);
+	}
+
+	/**
+	 * The format a model is written in, only varied for the benchmark writing models.
+	 */
+	@State(Scope.Benchmark)
+	public static class Format {
+
+		@Param({"application/x-turtle", "application/rdf+xml", "application/n-triples", "application/ld+json", "application/json"})
+		public String contentType;
+	}
+}
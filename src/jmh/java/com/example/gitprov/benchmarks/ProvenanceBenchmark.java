@@ -0,0 +1,48 @@
+package com.example.gitprov.benchmarks;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+import org.openprovenance.prov.model.Document;
+import ro.uaic.info.gitprov.services.ProvenanceService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generation of the provenance of synthetic histories: building the records only, and streaming the
+ * whole provenance notation document as the repository endpoint does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProvenanceBenchmark {
+
+	@Param({"100", "1000"})
+	public int commits;
+
+	@Param({"10"})
+	public int filesPerCommit;
+
+	private ProvenanceService provenanceService;
+
+	@Setup
+	public void setUp() {
+		provenanceService = BenchmarkFixtures.newProvenanceService(commits, filesPerCommit);
+	}
+
+	@Benchmark
+	public Document buildRecords() throws IOException {
+		return BenchmarkFixtures.buildDocument(commits, filesPerCommit);
+	}
+
+	@Benchmark
+	public long writeProvn() throws IOException {
+		CountingOutputStream outputStream = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+		provenanceService.writeDocument(BenchmarkFixtures.REPOSITORY, BenchmarkFixtures.PROVENANCE_NS, "text/provenance-notation", outputStream);
+		return outputStream.getByteCount();
+	}
+}
@@ -0,0 +1,59 @@
+package com.example.gitprov.benchmarks;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+import ro.uaic.info.gitprov.models.GenerationState;
+import ro.uaic.info.gitprov.services.StoreService;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SPARQL queries against a stored document, with the results cached or executed every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SparqlBenchmark {
+
+	private static final String PREFIXES = "PREFIX prov: <http://www.w3.org/ns/prov#>\n";
+
+	private static final Map<String, String> QUERIES = new HashMap<>();
+
+	static {
+		QUERIES.put("agents", PREFIXES + "SELECT ?agent WHERE { ?agent a prov:Agent }");
+		QUERIES.put("activities", PREFIXES + "SELECT (COUNT(?activity) AS ?count) WHERE { ?activity a prov:Activity }");
+		QUERIES.put("derivations", PREFIXES + "SELECT ?entity ?source ?activity WHERE { ?entity prov:qualifiedDerivation ?derivation . ?derivation prov:entity ?source ; prov:hadActivity ?activity } LIMIT 1000");
+	}
+
+	@Param({"1000"})
+	public int commits;
+
+	@Param({"agents", "activities", "derivations"})
+	public String query;
+
+	@Param({"false", "true"})
+	public boolean cacheResults;
+
+	private StoreService storeService;
+
+	@Setup
+	public void setUp() throws IOException {
+		storeService = BenchmarkFixtures.newStoreService(BenchmarkFixtures.newSparqlService(cacheResults));
+		String turtle = BenchmarkFixtures.newProvenanceService(commits, 10).getDocument(BenchmarkFixtures.buildDocument(commits, 10), "application/x-turtle");
+		storeService.storeDocument(BenchmarkFixtures.DOCUMENT_NAME, turtle, new GenerationState());
+	}
+
+	@Benchmark
+	public long executeQuery() throws IOException {
+		CountingOutputStream outputStream = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+		storeService.executeQuery(BenchmarkFixtures.DOCUMENT_NAME, QUERIES.get(query), "text/csv", outputStream);
+		return outputStream.getByteCount();
+	}
+}
@@ -0,0 +1,50 @@
+package com.example.gitprov.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.uaic.info.gitprov.models.GenerationState;
+import ro.uaic.info.gitprov.services.StoreService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the storing of a whole document, replacing the stored one, and the reading of a stored document. The store
+ * is opened in the working directory, the target directory when run through Maven.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StoreBenchmark {
+
+	private static final String WRITTEN_DOCUMENT_NAME = "benchmarks/written";
+
+	@Param({"1000"})
+	public int commits;
+
+	@Param({"application/x-turtle", "application/rdf+xml"})
+	public String contentType;
+
+	private StoreService storeService;
+
+	private String turtle;
+
+	@Setup
+	public void setUp() throws IOException {
+		storeService = BenchmarkFixtures.newStoreService(BenchmarkFixtures.newSparqlService(false));
+		turtle = BenchmarkFixtures.newProvenanceService(commits, 10).getDocument(BenchmarkFixtures.buildDocument(commits, 10), "application/x-turtle");
+		storeService.storeDocument(BenchmarkFixtures.DOCUMENT_NAME, turtle, new GenerationState());
+	}
+
+	@Benchmark
+	public void storeDocument() throws IOException {
+		storeService.storeDocument(WRITTEN_DOCUMENT_NAME, turtle, new GenerationState());
+	}
+
+	@Benchmark
+	public String getDocument() throws IOException {
+		return storeService.getDocument(BenchmarkFixtures.DOCUMENT_NAME, contentType);
+	}
+}
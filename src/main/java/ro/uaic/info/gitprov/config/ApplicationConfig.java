@@ -3,8 +3,10 @@ package ro.uaic.info.gitprov.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.log4j.Logger;
 import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.IGitHubConstants;
 import org.eclipse.egit.github.core.service.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
@@ -12,6 +14,17 @@ import org.springframework.core.env.Environment;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import ro.uaic.info.gitprov.services.GitHubResponseCache;
+import ro.uaic.info.gitprov.services.RateLimitedGitHubClient;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The Application config.
@@ -24,10 +37,44 @@ public class ApplicationConfig {
 
     private GitHubClient gitHubClient;
 
+    /**
+     * Builds the Github client from the token in the github-token environment variable and the comma separated
+     * tokens in the github-tokens one, the requests being spread over all of them. The API is reached at the configured
+     * host, Github itself by default, a GitHub Enterprise server or an emulator of the API otherwise. The responses are
+     * cached on disk unless the cache size is 0.
+     *
+     * @param environment the environment
+     */
     @Autowired
     public ApplicationConfig(Environment environment) {
-        gitHubClient = new GitHubClient();
-        gitHubClient.setOAuth2Token(System.getenv().get("github-token"));
+        List<String> tokens = new ArrayList<>();
+        addTokens(tokens, System.getenv().get("github-token"));
+        addTokens(tokens, System.getenv().get("github-tokens"));
+
+        gitHubClient = new RateLimitedGitHubClient(environment.getProperty("gitprov.github.host", IGitHubConstants.HOST_API),
+                environment.getProperty("gitprov.github.port", Integer.class, -1),
+                environment.getProperty("gitprov.github.scheme", IGitHubConstants.PROTOCOL_HTTPS), tokens,
+                environment.getProperty("gitprov.github.requests-per-second", Double.class, 20.0),
+                environment.getProperty("gitprov.github.burst", Integer.class, 40),
+                environment.getProperty("gitprov.github.max-wait-ms", Long.class, 60000L));
+
+        long cacheSize = environment.getProperty("gitprov.github.cache.size", Long.class, 1073741824L);
+        if (cacheSize > 0) {
+            File cacheDirectory = new File(environment.getProperty("gitprov.github.cache.directory", "github-cache"));
+            ((RateLimitedGitHubClient) gitHubClient).setResponseCache(new GitHubResponseCache(cacheDirectory, cacheSize));
+        }
+    }
+
+    private static void addTokens(List<String> tokens, String value) {
+        if (value == null) {
+            return;
+        }
+
+        for (String token : value.split(",")) {
+            if (!token.trim().isEmpty() && !tokens.contains(token.trim())) {
+                tokens.add(token.trim());
+            }
+        }
     }
 
     @Bean
@@ -40,6 +87,11 @@ public class ApplicationConfig {
         };
     }
 
+    @Bean
+    public GitHubClient gitHubClient() {
+        return gitHubClient;
+    }
+
     @Bean
     public RepositoryService repositoryService() {
         return new RepositoryService(gitHubClient);
@@ -65,6 +117,40 @@ public class ApplicationConfig {
         return new UserService(gitHubClient);
     }
 
+    /**
+     * The pool used to fetch the files of the commits ahead of the provenance record building.
+     *
+     * @param poolSize the number of concurrent requests made to the Github API
+     * @return the executor service
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    ExecutorService commitFetchExecutor(@Value("${gitprov.fetch.pool-size:8}") int poolSize) {
+        return Executors.newFixedThreadPool(poolSize);
+    }
+
+    /**
+     * The pool running the jobs storing the provenance of repositories, rejecting the jobs over the queue size.
+     *
+     * @param poolSize  the number of jobs run at the same time
+     * @param queueSize the number of jobs waiting to be run
+     * @return the executor service
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    ExecutorService ingestionExecutor(@Value("${gitprov.jobs.pool-size:2}") int poolSize, @Value("${gitprov.jobs.queue-size:100}") int queueSize) {
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueSize));
+    }
+
+    /**
+     * The pool on which the repositories of an organization or of a user are stored.
+     *
+     * @param parallelism the number of repositories stored at the same time
+     * @return the executor service
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    ExecutorService bulkIngestionExecutor(@Value("${gitprov.bulk.parallelism:4}") int parallelism) {
+        return Executors.newFixedThreadPool(parallelism);
+    }
+
     @Bean
     String provStoreApiKey() {
         return System.getenv().get("provstore-api-key");
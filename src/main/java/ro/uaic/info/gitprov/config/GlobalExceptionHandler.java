@@ -1,11 +1,21 @@
 package ro.uaic.info.gitprov.config;
 
+import org.apache.jena.query.QueryCancelledException;
 import org.apache.log4j.Logger;
 import org.eclipse.egit.github.core.client.RequestException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import ro.uaic.info.gitprov.services.QueryLimitExceededException;
+import ro.uaic.info.gitprov.services.QueryRejectedException;
+import ro.uaic.info.gitprov.services.RangeTooLargeException;
+import ro.uaic.info.gitprov.services.RateLimitExceededException;
+import ro.uaic.info.gitprov.services.UnknownRevisionException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 
 
 /**
@@ -26,4 +36,85 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(RequestException.class)
     public void handleRequestException() {
     }
+
+    /**
+     * Handle rate limit exceeded exception, telling the client when the Github rate limit resets.
+     *
+     * @param e        the exception
+     * @param response the response
+     * @throws IOException the io exception
+     */
+    @ExceptionHandler(RateLimitExceededException.class)
+    public void handleRateLimitExceededException(RateLimitExceededException e, HttpServletResponse response) throws IOException {
+        logger.warn(e.getMessage());
+        long retryAfter = Math.max(0, e.getResetTime() - System.currentTimeMillis()) / 1000 + 1;
+        response.setHeader("Retry-After", String.valueOf(retryAfter));
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+    }
+
+    /**
+     * Handle unknown revision exception, thrown when a scoped generation is bounded by a commit of another history.
+     *
+     * @param e        the exception
+     * @param response the response
+     * @throws IOException the io exception
+     */
+    @ExceptionHandler(UnknownRevisionException.class)
+    public void handleUnknownRevisionException(UnknownRevisionException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.NOT_FOUND.value(), e.getMessage());
+    }
+
+    /**
+     * Handle range too large exception, thrown when a scoped generation has more commits after its base than may be
+     * compared.
+     *
+     * @param e        the exception
+     * @param response the response
+     * @throws IOException the io exception
+     */
+    @ExceptionHandler(RangeTooLargeException.class)
+    public void handleRangeTooLargeException(RangeTooLargeException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+    }
+
+    /**
+     * Handle query rejected exception, telling the client to retry later.
+     *
+     * @param e        the exception
+     * @param response the response
+     * @throws IOException the io exception
+     */
+    @ExceptionHandler(QueryRejectedException.class)
+    public void handleQueryRejectedException(QueryRejectedException e, HttpServletResponse response) throws IOException {
+        logger.warn(e.getMessage());
+        response.sendError(e.isQueueFull() ? HttpStatus.TOO_MANY_REQUESTS.value() : HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+    }
+
+    /**
+     * Handle query limit exceeded exception, thrown when a query asks for more solutions than a query may return.
+     *
+     * @param e        the exception
+     * @param response the response
+     * @throws IOException the io exception
+     */
+    @ExceptionHandler(QueryLimitExceededException.class)
+    public void handleQueryLimitExceededException(QueryLimitExceededException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+    }
+
+    /**
+     * Handle query cancelled exception, thrown when a query runs longer than the timeout.
+     */
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Query timed out")
+    @ExceptionHandler(QueryCancelledException.class)
+    public void handleQueryCancelledException() {
+    }
+
+    /**
+     * Handle rejected execution exception, thrown when the job queue is full.
+     */
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Too many jobs queued")
+    @ExceptionHandler(RejectedExecutionException.class)
+    public void handleRejectedExecutionException() {
+    }
 }
\ No newline at end of file
@@ -3,16 +3,22 @@ package ro.uaic.info.gitprov.controllers;
 import org.apache.log4j.Logger;
 import org.eclipse.egit.github.core.Repository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import ro.uaic.info.gitprov.models.HistoryScope;
+import ro.uaic.info.gitprov.services.DocumentCache;
 import ro.uaic.info.gitprov.services.GithubService;
 import ro.uaic.info.gitprov.services.ProvenanceService;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +36,9 @@ public class ProvController {
     @Autowired
     private ProvenanceService provenanceService;
 
+    @Autowired
+    private DocumentCache documentCache;
+
     /**
      * The constant logger.
      */
@@ -59,20 +68,78 @@ public class ProvController {
     }
 
     /**
-     * Gets repository by user and name.
+     * Writes the provenance document of a repository, identified by user and name, directly to the response. The
+     * document is tagged with the head commit of the repository: a client holding the current version gets a not
+     * modified response, and a document generated for the same head commit is served from the cache. A document
+     * scoped by a time window, by a range of commits or by a path covers only the commits within the scope and the
+     * files under the path, and is generated on every request.
      *
      * @param owner the owner
      * @param name  the name
-     * @return the repository by user and name
+     * @param since the date of the oldest commits covered, in ISO 8601 format
+     * @param until the date of the newest commits covered, in ISO 8601 format
+     * @param range the range of commits covered, as base..head, of at most 10000 commits for a repository read from
+     *              Github
+     * @param path  the path of the files covered, a file or a directory
      * @throws IOException the io exception
      */
     @RequestMapping(value = "/owner/{owner}/{name}", method = RequestMethod.GET, produces = {"text/provenance-notation", "application/x-turtle", "application/xml", "application/rdf+xml", "application/pdf", "application/json", "application/msword", "image/svg+xml", "image/png", "image/jpeg", "application/trig"})
-    @ResponseBody
-    HttpEntity<?> getRepositoryByUserAndName(HttpServletRequest request, @PathVariable String owner, @PathVariable String name) throws IOException {
+    void getRepositoryByUserAndName(HttpServletRequest request, HttpServletResponse response, @PathVariable String owner, @PathVariable String name,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date until,
+                                    @RequestParam(required = false) String range,
+                                    @RequestParam(required = false) String path) throws IOException {
+        HistoryScope scope = null;
+        if (since != null || until != null || range != null || path != null) {
+            scope = new HistoryScope();
+            scope.setSince(since);
+            scope.setUntil(until);
+            scope.setPath(path);
+            if (range != null) {
+                try {
+                    scope.setRange(range);
+                } catch (IllegalArgumentException e) {
+                    response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+                    return;
+                }
+            }
+        }
+
         Repository repository = githubService.getRepositoryByOwnerAndName(owner, name);
         String contentType = request.getHeader("Accept");
-        String result = provenanceService.repositoryToDocument(repository, getProvControllerProvenanceNamespace(owner, name), contentType);
-        return new ResponseEntity<>(result, HttpStatus.OK);
+        String provenanceNs = getProvControllerProvenanceNamespace(owner, name);
+
+        if (scope != null) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(contentType);
+            provenanceService.writeDocument(repository, provenanceNs, contentType, scope, response.getOutputStream());
+            return;
+        }
+
+        String headSha = provenanceService.getHeadSha(repository);
+
+        if (headSha != null && new ServletWebRequest(request, response).checkNotModified(DocumentCache.getETag(headSha, contentType))) {
+            return;
+        }
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(contentType);
+
+        if (headSha == null) {
+            provenanceService.writeDocument(repository, provenanceNs, contentType, response.getOutputStream());
+            return;
+        }
+
+        String key = DocumentCache.getKey(repository.getOwner().getLogin(), repository.getName(), headSha, contentType);
+        if (documentCache.writeTo(key, response.getOutputStream())) {
+            return;
+        }
+
+        try (DocumentCache.Entry entry = documentCache.newEntry(key, response.getOutputStream())) {
+            if (headSha.equals(provenanceService.writeDocument(repository, provenanceNs, contentType, entry))) {
+                entry.complete();
+            }
+        }
     }
 
     /**
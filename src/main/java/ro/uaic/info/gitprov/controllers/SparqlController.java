@@ -1,44 +1,88 @@
 package ro.uaic.info.gitprov.controllers;
 
-import org.eclipse.egit.github.core.Repository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import ro.uaic.info.gitprov.services.GithubService;
-import ro.uaic.info.gitprov.services.ProvenanceService;
 import ro.uaic.info.gitprov.services.SparqlService;
 import ro.uaic.info.gitprov.services.StoreService;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 @RestController
 @RequestMapping(value = "/sparql")
 public class SparqlController {
 
+    /**
+     * The header giving the limit put on the number of solutions of a query setting none, so the client knows the
+     * result may be cut.
+     */
+    private static final String HEADER_RESULT_LIMIT = "X-Result-Limit";
+
     @Autowired
     private SparqlService sparqlService;
 
     @Autowired
-    private GithubService githubService;
+    private StoreService storeService;
 
-    @Autowired
-    private ProvenanceService provenanceService;
+    /**
+     * Executes a query against the union of the stored repositories, or of the ones given as graph parameters, as
+     * owner/name. Each repository is also a named graph of the query. A query without a limit returns at most the
+     * configured maximum number of solutions, given in the X-Result-Limit header, a query with a higher limit is
+     * rejected with 400 Bad Request.
+     *
+     * @param request  the request
+     * @param response the response
+     * @param graphs   the stored repositories queried, all of them if none
+     * @param query    the query
+     * @throws IOException the io exception
+     */
+    @RequestMapping(value = "", method = RequestMethod.POST, produces = {"text/plain", "application/xml", "text/csv", "application/json", "text/tab-separated-values", "application/sparql-results+xml", "text/rdf+n3", "application/x-turtle", "application/n-triples"})
+    void executeStoreQuery(HttpServletRequest request, HttpServletResponse response, @RequestParam(value = "graph", required = false) List<String> graphs, @RequestBody String query) throws IOException {
+        String contentType = request.getHeader("Accept");
 
-    @Autowired
-    private StoreService storeService;
+        setResultLimit(response, query);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(contentType);
+        storeService.executeQuery(graphs == null ? Collections.emptyList() : graphs, query, contentType, response.getOutputStream());
+    }
 
+    /**
+     * Executes a query against a stored repository. A query without a limit returns at most the configured maximum
+     * number of solutions, given in the X-Result-Limit header, a query with a higher limit is rejected with 400 Bad
+     * Request.
+     *
+     * @param request  the request
+     * @param response the response
+     * @param owner    the owner of the repository
+     * @param name     the name of the repository
+     * @param query    the query
+     * @throws IOException the io exception
+     */
     @RequestMapping(value = "/owner/{owner}/{name}", method = RequestMethod.POST, produces = {"text/plain", "application/xml", "text/csv", "application/json", "text/tab-separated-values", "application/sparql-results+xml", "text/rdf+n3", "application/x-turtle", "application/n-triples"})
-    @ResponseBody
-    HttpEntity<?> executeQuery(HttpServletRequest request, @PathVariable String owner, @PathVariable String name, @RequestBody String query) throws IOException {
-        Repository repository = githubService.getRepositoryByOwnerAndName(owner, name);
-//        String result = provenanceService.repositoryToDocument(repository, getProvControllerProvenanceNamespace(owner, name), "application/x-turtle");
-        String result = storeService.getDocument(owner + "/" + name, "application/x-turtle");
-
+    void executeQuery(HttpServletRequest request, HttpServletResponse response, @PathVariable String owner, @PathVariable String name, @RequestBody String query) throws IOException {
         String contentType = request.getHeader("Accept");
-        return new ResponseEntity<>(sparqlService.getQueryResult(result, query, contentType), HttpStatus.OK);
 
+        setResultLimit(response, query);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(contentType);
+        storeService.executeQuery(owner + "/" + name, query, contentType, response.getOutputStream());
+    }
+
+    /**
+     * Tells the client the limit put on the number of solutions of a query, if the query sets none
+     *
+     * @param response the response
+     * @param query    the query
+     * @throws IOException if the query sets a limit higher than the maximum
+     */
+    private void setResultLimit(HttpServletResponse response, String query) throws IOException {
+        long limit = sparqlService.getImposedLimit(query);
+        if (limit >= 0) {
+            response.setHeader(HEADER_RESULT_LIMIT, String.valueOf(limit));
+        }
     }
 }
@@ -3,11 +3,15 @@ package ro.uaic.info.gitprov.controllers;
 import org.eclipse.egit.github.core.Repository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ro.uaic.info.gitprov.models.BulkIngestionSummary;
+import ro.uaic.info.gitprov.models.IngestionJob;
+import ro.uaic.info.gitprov.services.BulkIngestionService;
 import ro.uaic.info.gitprov.services.GithubService;
-import ro.uaic.info.gitprov.services.ProvenanceService;
+import ro.uaic.info.gitprov.services.IngestionJobService;
 import ro.uaic.info.gitprov.services.StoreService;
 
 import javax.servlet.http.HttpServletRequest;
@@ -29,7 +33,10 @@ public class StoreController {
     StoreService storeService;
 
     @Autowired
-    ProvenanceService provenanceService;
+    IngestionJobService ingestionJobService;
+
+    @Autowired
+    BulkIngestionService bulkIngestionService;
 
 
     @RequestMapping(value = "/owner/{owner}/{name}", method = RequestMethod.GET, produces = {"text/csv", "application/json", "application/rdf+xml", "application/x-turtle", "application/n-triples", "application/ld+json"})
@@ -44,9 +51,38 @@ public class StoreController {
     @RequestMapping(value = "/owner/{owner}/{name}", method = RequestMethod.POST)
     @ResponseBody
     HttpEntity<?> storeRepositoryByUserAndName(HttpServletRequest request, @PathVariable String owner, @PathVariable String name) throws IOException {
-        Repository repository = githubService.getRepositoryByOwnerAndName(owner, name);
-        storeService.storeDocument(owner + "/" + name, provenanceService.repositoryToDocument(repository, getProvControllerProvenanceNamespace(owner, name), "application/x-turtle"));
-        return new ResponseEntity<>(HttpStatus.OK);
+        githubService.getRepositoryByOwnerAndName(owner, name);
+        IngestionJob job = ingestionJobService.submit(owner, name, getProvControllerProvenanceNamespace(owner, name));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.LOCATION, "/store/jobs/" + job.getId());
+        return new ResponseEntity<>(job, headers, HttpStatus.ACCEPTED);
+    }
+
+    @RequestMapping(value = "/jobs/{id}", method = RequestMethod.GET)
+    @ResponseBody
+    HttpEntity<?> getJob(@PathVariable String id) {
+        IngestionJob job = ingestionJobService.getJob(id);
+        if (job == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(job, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/organizations/{organization}", method = RequestMethod.POST)
+    @ResponseBody
+    HttpEntity<BulkIngestionSummary> storeAllRepositoriesByOrganization(@PathVariable String organization) throws IOException {
+        BulkIngestionSummary summary = bulkIngestionService.storeRepositories(organization, githubService.getAllRepositoriesByOrganization(organization),
+                repository -> getProvControllerProvenanceNamespace(organization, repository.getName()));
+        return new ResponseEntity<>(summary, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/users/{user}", method = RequestMethod.POST)
+    @ResponseBody
+    HttpEntity<BulkIngestionSummary> storeAllRepositoriesByUser(@PathVariable String user) throws IOException {
+        BulkIngestionSummary summary = bulkIngestionService.storeRepositories(user, githubService.getAllRepositoriesByUser(user),
+                repository -> getProvControllerProvenanceNamespace(user, repository.getName()));
+        return new ResponseEntity<>(summary, HttpStatus.OK);
     }
 
     @RequestMapping(value = "/repos", method = RequestMethod.GET)
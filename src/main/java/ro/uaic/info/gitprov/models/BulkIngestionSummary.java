@@ -0,0 +1,130 @@
+package ro.uaic.info.gitprov.models;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of storing all the repositories of an organization or of a user. The repositories are added to it by
+ * several threads at once, its lists are returned as copies.
+ */
+public class BulkIngestionSummary {
+
+    private final String owner;
+
+    private int repositories;
+
+    /**
+     * The repositories whose new commits were stored
+     */
+    private final List<String> stored = new ArrayList<>();
+
+    /**
+     * The repositories whose head commit was already stored
+     */
+    private final List<String> upToDate = new ArrayList<>();
+
+    /**
+     * The repositories not started because the API budget was spent
+     */
+    private final List<String> notStarted = new ArrayList<>();
+
+    /**
+     * The cause of the failure of each failed repository
+     */
+    private final Map<String, String> failures = new LinkedHashMap<>();
+
+    private int commits;
+
+    private int apiRequests;
+
+    private long elapsedMs;
+
+    public BulkIngestionSummary(String owner) {
+        this.owner = owner;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public int getRepositories() {
+        return repositories;
+    }
+
+    public void setRepositories(int repositories) {
+        this.repositories = repositories;
+    }
+
+    public synchronized List<String> getStored() {
+        return new ArrayList<>(stored);
+    }
+
+    public synchronized List<String> getUpToDate() {
+        return new ArrayList<>(upToDate);
+    }
+
+    public synchronized List<String> getNotStarted() {
+        return new ArrayList<>(notStarted);
+    }
+
+    public synchronized Map<String, String> getFailures() {
+        return new LinkedHashMap<>(failures);
+    }
+
+    public synchronized int getCommits() {
+        return commits;
+    }
+
+    public int getApiRequests() {
+        return apiRequests;
+    }
+
+    public void setApiRequests(int apiRequests) {
+        this.apiRequests = apiRequests;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    public synchronized void addStored(String repository, int commits) {
+        stored.add(repository);
+        this.commits += commits;
+    }
+
+    public synchronized void addUpToDate(String repository) {
+        upToDate.add(repository);
+    }
+
+    public synchronized void addNotStarted(String repository) {
+        notStarted.add(repository);
+    }
+
+    public synchronized void addFailure(String repository, String cause) {
+        failures.put(repository, cause);
+    }
+
+    /**
+     * Gets the number of repositories stored or found up to date per second
+     *
+     * @return the throughput
+     */
+    public synchronized double getRepositoriesPerSecond() {
+        return elapsedMs == 0 ? 0 : (stored.size() + upToDate.size()) * 1000.0 / elapsedMs;
+    }
+
+    /**
+     * Gets the number of commits stored per second
+     *
+     * @return the throughput
+     */
+    public synchronized double getCommitsPerSecond() {
+        return elapsedMs == 0 ? 0 : commits * 1000.0 / elapsedMs;
+    }
+}
@@ -0,0 +1,214 @@
+package ro.uaic.info.gitprov.models;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * The sha of the last commit that changed each file, held in primitive arrays: every path is given an id, the index of
+ * its sha in a byte array holding the shas as 20 bytes each, and the ids are found through an open addressing table.
+ * A file costs its path, 20 bytes and a few table slots, instead of a map entry, a boxed key and a 40 character
+ * string, and its version is read and replaced in constant time.
+ */
+public class FileVersionIndex {
+
+    /**
+     * The number of bytes of a sha.
+     */
+    private static final int SHA_LENGTH = 20;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The paths, by id.
+     */
+    private String[] paths = new String[INITIAL_CAPACITY];
+
+    /**
+     * The shas of the last commits, the one of a path starting at its id times the length of a sha.
+     */
+    private byte[] shas = new byte[INITIAL_CAPACITY * SHA_LENGTH];
+
+    /**
+     * The ids of the paths plus one, at the slot of their hash or after it, 0 marking a free slot.
+     */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    private int size;
+
+    /**
+     * Gets the number of files
+     *
+     * @return the number of files
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether the version of a file is known
+     *
+     * @param path the name of the file
+     * @return whether the version is known
+     */
+    public boolean contains(String path) {
+        return find(path) >= 0;
+    }
+
+    /**
+     * Gets the sha of the last commit that changed a file
+     *
+     * @param path the name of the file
+     * @return the sha, or null if the file is unknown
+     */
+    public String get(String path) {
+        int id = find(path);
+        return id < 0 ? null : getSha(id);
+    }
+
+    /**
+     * Registers the sha of the last commit that changed a file, giving an id to a new file
+     *
+     * @param path the name of the file
+     * @param sha  the sha of the commit
+     * @return the id of the file
+     * @throws IllegalArgumentException if the sha is not made of 40 hexadecimal digits
+     */
+    public int put(String path, String sha) {
+        if (sha.length() != SHA_LENGTH * 2) {
+            throw new IllegalArgumentException("Invalid sha " + sha);
+        }
+        for (int i = 0; i < sha.length(); i++) {
+            if (Character.digit(sha.charAt(i), 16) < 0) {
+                throw new IllegalArgumentException("Invalid sha " + sha);
+            }
+        }
+
+        int id = find(path);
+        if (id < 0) {
+            id = add(path, -id - 1);
+        }
+
+        setSha(id, sha);
+        return id;
+    }
+
+    /**
+     * Gets the name of a file
+     *
+     * @param id the id of the file
+     * @return the name
+     */
+    public String getPath(int id) {
+        return paths[id];
+    }
+
+    /**
+     * Gets the sha of the last commit that changed a file
+     *
+     * @param id the id of the file
+     * @return the sha
+     */
+    public String getSha(int id) {
+        char[] result = new char[SHA_LENGTH * 2];
+        int offset = id * SHA_LENGTH;
+
+        for (int i = 0; i < SHA_LENGTH; i++) {
+            int b = shas[offset + i] & 0xff;
+            result[2 * i] = HEX_DIGITS[b >>> 4];
+            result[2 * i + 1] = HEX_DIGITS[b & 0xf];
+        }
+
+        return new String(result);
+    }
+
+    /**
+     * Calls an action with the name of every file and its sha, in the order the files were added
+     *
+     * @param action the action
+     */
+    public void forEach(BiConsumer<String, String> action) {
+        for (int id = 0; id < size; id++) {
+            action.accept(paths[id], getSha(id));
+        }
+    }
+
+    /**
+     * Forgets every file
+     */
+    public void clear() {
+        Arrays.fill(paths, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    /**
+     * Finds the id of a file
+     *
+     * @param path the name of the file
+     * @return the id, or minus one minus the free slot of the table where the file goes if it is unknown
+     */
+    private int find(String path) {
+        int mask = table.length - 1;
+        int slot = hash(path) & mask;
+
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -slot - 1;
+            }
+            if (paths[entry - 1].equals(path)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int add(String path, int slot) {
+        if (size == paths.length) {
+            paths = Arrays.copyOf(paths, size * 2);
+            shas = Arrays.copyOf(shas, size * 2 * SHA_LENGTH);
+        }
+
+        int id = size++;
+        paths[id] = path;
+        table[slot] = id + 1;
+
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+
+        for (int id = 0; id < size; id++) {
+            int slot = hash(paths[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private void setSha(int id, String sha) {
+        int offset = id * SHA_LENGTH;
+        for (int i = 0; i < SHA_LENGTH; i++) {
+            shas[offset + i] = (byte) (Character.digit(sha.charAt(2 * i), 16) << 4 | Character.digit(sha.charAt(2 * i + 1), 16));
+        }
+    }
+
+    /**
+     * Spreads the hash of a path, so paths differing in their high bits do not share a slot
+     *
+     * @param path the name of the file
+     * @return the hash
+     */
+    private static int hash(String path) {
+        int h = path.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,89 @@
+package ro.uaic.info.gitprov.models;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The state left behind by a provenance generation, used to continue it from the last processed commit
+ */
+public class GenerationState {
+
+    /**
+     * The sha of the most recent commit whose records were generated
+     */
+    private String lastCommitSha;
+
+    /**
+     * Whether the last generation only covered the commits pushed after a previous one
+     */
+    private boolean incremental;
+
+    /**
+     * The sha of the last commit that changed each file
+     */
+    private final FileVersionIndex fileVersions = new FileVersionIndex();
+
+    /**
+     * The ids of the files whose version changed since the state was loaded
+     */
+    private final BitSet changedFiles = new BitSet();
+
+    public String getLastCommitSha() {
+        return lastCommitSha;
+    }
+
+    public void setLastCommitSha(String lastCommitSha) {
+        this.lastCommitSha = lastCommitSha;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public FileVersionIndex getFileVersions() {
+        return fileVersions;
+    }
+
+    /**
+     * Gets the files whose version changed since the state was loaded
+     *
+     * @return the names of the files
+     */
+    public List<String> getChangedFiles() {
+        List<String> result = new ArrayList<>(changedFiles.cardinality());
+        changedFiles.stream().forEach(id -> result.add(fileVersions.getPath(id)));
+        return result;
+    }
+
+    /**
+     * Registers a new version of a file
+     *
+     * @param filename the name of the file
+     * @param sha      the sha of the commit that changed it
+     */
+    public void putFileVersion(String filename, String sha) {
+        changedFiles.set(fileVersions.put(filename, sha));
+    }
+
+    /**
+     * Forgets the changed files, once their versions are stored
+     */
+    public void clearChangedFiles() {
+        changedFiles.clear();
+    }
+
+    /**
+     * Forgets everything, so the next generation covers the whole history
+     */
+    public void reset() {
+        lastCommitSha = null;
+        incremental = false;
+        fileVersions.clear();
+        changedFiles.clear();
+    }
+}
@@ -0,0 +1,127 @@
+package ro.uaic.info.gitprov.models;
+
+import java.util.Date;
+
+/**
+ * The part of the history of a repository covered by a provenance generation: the commits reachable from a head
+ * commit and not from a base commit, made within a time window and changing the files under a path. Every bound is
+ * optional.
+ */
+public class HistoryScope {
+
+    /**
+     * The separator of the base and the head of a range, as in git.
+     */
+    private static final String RANGE_SEPARATOR = "..";
+
+    /**
+     * The date of the oldest commits covered, inclusive
+     */
+    private Date since;
+
+    /**
+     * The date of the newest commits covered, inclusive
+     */
+    private Date until;
+
+    /**
+     * The sha of the last commit not covered, the commits it is reachable from being excluded
+     */
+    private String base;
+
+    /**
+     * The sha or branch of the newest commit covered, the default branch if null
+     */
+    private String head;
+
+    /**
+     * The path of the files covered, a file or a directory, relative to the root of the repository
+     */
+    private String path;
+
+    public Date getSince() {
+        return since;
+    }
+
+    public void setSince(Date since) {
+        this.since = since;
+    }
+
+    public Date getUntil() {
+        return until;
+    }
+
+    public void setUntil(Date until) {
+        this.until = until;
+    }
+
+    public String getBase() {
+        return base;
+    }
+
+    public void setBase(String base) {
+        this.base = base;
+    }
+
+    public String getHead() {
+        return head;
+    }
+
+    public void setHead(String head) {
+        this.head = head;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Sets the path of the files covered, ignoring the leading and trailing slashes
+     *
+     * @param path the path of a file or a directory, or null for every file
+     */
+    public void setPath(String path) {
+        String trimmed = path == null ? "" : path.replaceAll("^/+|/+$", "");
+        this.path = emptyToNull(trimmed);
+    }
+
+    /**
+     * Whether a file is covered, being the path itself or under it
+     *
+     * @param filename the name of the file, relative to the root of the repository
+     * @return whether the file is covered
+     */
+    public boolean covers(String filename) {
+        return path == null || filename.equals(path) || (filename.startsWith(path) && filename.charAt(path.length()) == '/');
+    }
+
+    /**
+     * Sets the base and the head from a range written as in git, either of them being optional
+     *
+     * @param range the range, as base..head
+     * @throws IllegalArgumentException if the range is not written as base..head
+     */
+    public void setRange(String range) {
+        int separator = range.indexOf(RANGE_SEPARATOR);
+        String head = separator < 0 ? null : range.substring(separator + RANGE_SEPARATOR.length());
+        if (head == null || head.startsWith(".") || head.contains(RANGE_SEPARATOR)) {
+            throw new IllegalArgumentException("Invalid range " + range + ", expected base..head");
+        }
+
+        this.base = emptyToNull(range.substring(0, separator));
+        this.head = emptyToNull(head);
+    }
+
+    /**
+     * Gets the range of the scope written as in git
+     *
+     * @return the range, as base..head
+     */
+    public String getRange() {
+        return (base == null ? "" : base) + RANGE_SEPARATOR + (head == null ? "" : head);
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,217 @@
+package ro.uaic.info.gitprov.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A job storing the provenance of a repository in the store, run in the background
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class IngestionJob {
+
+    /**
+     * The phases of a job, in the order they are passed through
+     */
+    public enum Phase {
+        QUEUED, LISTING_COMMITS, PROCESSING_COMMITS, COMPLETED, FAILED
+    }
+
+    private String id;
+
+    private String owner;
+
+    private String name;
+
+    /**
+     * The provenance namespace, which depends on the request the job was submitted with
+     */
+    private String provenanceNs;
+
+    private volatile Phase phase = Phase.QUEUED;
+
+    /**
+     * The number of commits to process, including the ones processed before a restart
+     */
+    private volatile int totalCommits;
+
+    private volatile int processedCommits;
+
+    /**
+     * The number of commits already processed when the current run started processing, used to estimate its pace
+     */
+    private volatile int resumedCommits;
+
+    private long createdAt;
+
+    private volatile long startedAt;
+
+    private volatile long processingStartedAt;
+
+    private volatile long finishedAt;
+
+    /**
+     * The cause of the failure of the job
+     */
+    private volatile String failure;
+
+    public IngestionJob() {
+    }
+
+    public IngestionJob(String id, String owner, String name, String provenanceNs) {
+        this.id = id;
+        this.owner = owner;
+        this.name = name;
+        this.provenanceNs = provenanceNs;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getProvenanceNs() {
+        return provenanceNs;
+    }
+
+    public void setProvenanceNs(String provenanceNs) {
+        this.provenanceNs = provenanceNs;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    public int getTotalCommits() {
+        return totalCommits;
+    }
+
+    public void setTotalCommits(int totalCommits) {
+        this.totalCommits = totalCommits;
+    }
+
+    public int getProcessedCommits() {
+        return processedCommits;
+    }
+
+    public void setProcessedCommits(int processedCommits) {
+        this.processedCommits = processedCommits;
+    }
+
+    public int getResumedCommits() {
+        return resumedCommits;
+    }
+
+    public void setResumedCommits(int resumedCommits) {
+        this.resumedCommits = resumedCommits;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getProcessingStartedAt() {
+        return processingStartedAt;
+    }
+
+    public void setProcessingStartedAt(long processingStartedAt) {
+        this.processingStartedAt = processingStartedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public void setFailure(String failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * Whether the job completed or failed
+     *
+     * @return whether the job is finished
+     */
+    public boolean isFinished() {
+        return phase == Phase.COMPLETED || phase == Phase.FAILED;
+    }
+
+    /**
+     * Registers the commits listed by a run of the job, which are the ones left to process
+     *
+     * @param count the number of commits
+     */
+    public void commitsListed(int count) {
+        resumedCommits = processedCommits;
+        totalCommits = processedCommits + count;
+        processingStartedAt = System.currentTimeMillis();
+        phase = Phase.PROCESSING_COMMITS;
+    }
+
+    /**
+     * Registers a processed commit
+     */
+    public void commitProcessed() {
+        processedCommits++;
+    }
+
+    /**
+     * Estimates the time left to process the commits, from the pace of the current run
+     *
+     * @return the time in milliseconds, or -1 if it can not be estimated yet
+     */
+    public long getEstimatedRemainingMs() {
+        if (phase != Phase.PROCESSING_COMMITS) {
+            return isFinished() ? 0 : -1;
+        }
+
+        int processed = processedCommits - resumedCommits;
+        if (processed <= 0) {
+            return -1;
+        }
+
+        long elapsed = System.currentTimeMillis() - processingStartedAt;
+        return elapsed * (totalCommits - processedCommits) / processed;
+    }
+}
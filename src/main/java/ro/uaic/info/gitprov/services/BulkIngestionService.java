@@ -0,0 +1,147 @@
+package ro.uaic.info.gitprov.services;
+
+import org.apache.log4j.Logger;
+import org.eclipse.egit.github.core.Repository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ro.uaic.info.gitprov.models.BulkIngestionSummary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Stores the provenance of many repositories at once, several at the same time. The repositories whose head commit is
+ * already stored are skipped, and no repository is started once the requests made to the Github API by the ingestion
+ * exceed the budget, or once the requests left until the rate limit resets fall to the reserve. The requests of the
+ * ingestion are counted by a {@link GitHubRequestCounter}, so the requests made meanwhile by the rest of the
+ * application are not charged to it.
+ */
+@Service
+public class BulkIngestionService {
+
+    /**
+     * The constant logger.
+     */
+    final static Logger logger = Logger.getLogger(BulkIngestionService.class);
+
+    @Autowired
+    private GithubService githubService;
+
+    @Autowired
+    private ProvenanceService provenanceService;
+
+    @Autowired
+    private StoreService storeService;
+
+    @Autowired
+    private IngestionJobService ingestionJobService;
+
+    /**
+     * The pool on which the repositories are stored, shared by all the bulk ingestions.
+     */
+    @Autowired
+    private ExecutorService bulkIngestionExecutor;
+
+    /**
+     * The number of requests to the Github API a bulk ingestion may make, unlimited if 0.
+     */
+    @Value("${gitprov.bulk.api-budget:0}")
+    private int apiBudget;
+
+    /**
+     * The number of requests to the Github API left for the other uses of the application.
+     */
+    @Value("${gitprov.bulk.api-reserve:100}")
+    private int apiReserve;
+
+    /**
+     * Stores the provenance of repositories, waiting for all of them
+     *
+     * @param owner        the owner of the repositories
+     * @param repositories the repositories
+     * @param provenanceNs gets the provenance namespace of a repository, called on the calling thread
+     * @return the summary of the ingestion
+     * @throws IOException io exception
+     */
+    public BulkIngestionSummary storeRepositories(String owner, Collection<Repository> repositories, Function<Repository, String> provenanceNs) throws IOException {
+        BulkIngestionSummary summary = new BulkIngestionSummary(owner);
+        summary.setRepositories(repositories.size());
+
+        ApiBudget budget = new ApiBudget();
+        long start = System.currentTimeMillis();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Repository repository : repositories) {
+            String namespace = provenanceNs.apply(repository);
+            futures.add(bulkIngestionExecutor.submit(() -> budget.counter.run(() -> storeRepository(repository, namespace, budget, summary))));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while storing the repositories of " + owner, e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+
+        summary.setElapsedMs(System.currentTimeMillis() - start);
+        summary.setApiRequests(budget.counter.getCount());
+        logger.info("Stored " + summary.getStored().size() + " of " + repositories.size() + " repositories of " + owner + " in " + summary.getElapsedMs() + "ms");
+        return summary;
+    }
+
+    private void storeRepository(Repository repository, String provenanceNs, ApiBudget budget, BulkIngestionSummary summary) {
+        String documentName = repository.getOwner().getLogin() + "/" + repository.getName();
+
+        if (budget.isExhausted()) {
+            summary.addNotStarted(documentName);
+            return;
+        }
+
+        try {
+            String headSha = provenanceService.getHeadSha(repository);
+            if (headSha == null || headSha.equals(storeService.getGenerationState(documentName).getLastCommitSha())) {
+                summary.addUpToDate(documentName);
+                return;
+            }
+
+            AtomicInteger commits = new AtomicInteger();
+            ingestionJobService.storeRepository(repository, provenanceNs, new ProvenanceService.ProgressListener() {
+                @Override
+                public void commitProcessed() {
+                    commits.incrementAndGet();
+                }
+            });
+            summary.addStored(documentName, commits.get());
+        } catch (Exception e) {
+            logger.error("Could not store " + documentName, e);
+            summary.addFailure(documentName, e.getMessage() == null ? e.getClass().getName() : e.getMessage());
+        }
+    }
+
+    /**
+     * The requests made to the Github API by a bulk ingestion, and the requests left to the whole application until the
+     * rate limit resets.
+     */
+    private class ApiBudget {
+
+        private final GitHubRequestCounter counter = new GitHubRequestCounter();
+
+        boolean isExhausted() {
+            int remaining = githubService.getRemainingRequests();
+            return (apiBudget > 0 && counter.getCount() >= apiBudget) || (remaining >= 0 && remaining <= apiReserve);
+        }
+    }
+}
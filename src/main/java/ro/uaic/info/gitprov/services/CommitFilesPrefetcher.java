@@ -0,0 +1,128 @@
+package ro.uaic.info.gitprov.services;
+
+import org.eclipse.egit.github.core.CommitFile;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.service.CommitService;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Fetches the changed files of the commits of a history on a worker pool, keeping at most a fixed number of requests
+ * in flight ahead of the consumer. Results are handed out in the order of the history, so the consumer sees the same
+ * sequence it would see when fetching the commits one after another.
+ */
+public class CommitFilesPrefetcher implements CommitFilesReader {
+
+    /**
+     * The Commit service used to get the files of every commit.
+     */
+    private final CommitService commitService;
+
+    /**
+     * The repository the commits belong to.
+     */
+    private final IRepositoryIdProvider repository;
+
+    /**
+     * The pool on which the requests are executed.
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * The history whose commits are fetched, read as the requests are submitted.
+     */
+    private final CommitHistory history;
+
+    /**
+     * The maximum number of requests submitted ahead of the consumer.
+     */
+    private final int window;
+
+    /**
+     * The commits whose requests were submitted but not consumed yet, in history order.
+     */
+    private final Deque<Map.Entry<RepositoryCommit, Future<List<CommitFile>>>> pending = new ArrayDeque<>();
+
+    /**
+     * Instantiates a new Commit files prefetcher.
+     *
+     * @param commitService     the commit service
+     * @param repository        the repository
+     * @param executorService   the pool on which the requests are executed
+     * @param history           the history, in the order in which it is consumed
+     * @param window            the maximum number of requests in flight
+     */
+    public CommitFilesPrefetcher(CommitService commitService, IRepositoryIdProvider repository, ExecutorService executorService, CommitHistory history, int window) {
+        this.commitService = commitService;
+        this.repository = repository;
+        this.executorService = executorService;
+        this.history = history;
+        this.window = Math.max(1, window);
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        return !pending.isEmpty() || history.hasNext();
+    }
+
+    /**
+     * Gets the next commit and its files, waiting for its request to complete if needed
+     *
+     * @return the next commit, whose files are set
+     * @throws IOException the exception thrown by the request
+     */
+    @Override
+    public RepositoryCommit next() throws IOException {
+        fill();
+
+        Map.Entry<RepositoryCommit, Future<List<CommitFile>>> next = pending.poll();
+        if (next == null) {
+            throw new IllegalStateException("No more commits to fetch");
+        }
+
+        try {
+            return next.getKey().setFiles(next.getValue().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching commit files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Cancels all the requests that were not consumed
+     */
+    @Override
+    public void close() {
+        pending.forEach(next -> next.getValue().cancel(true));
+        pending.clear();
+    }
+
+    /**
+     * Submits requests until the window is full or there are no more commits
+     *
+     * @throws IOException io exception
+     */
+    private void fill() throws IOException {
+        while (pending.size() < window && history.hasNext()) {
+            RepositoryCommit repositoryCommit = history.next();
+            final String sha = repositoryCommit.getSha();
+            pending.add(new AbstractMap.SimpleImmutableEntry<>(repositoryCommit, executorService.submit(GitHubRequestCounter.propagate(() -> commitService.getCommit(repository, sha).getFiles()))));
+        }
+    }
+}
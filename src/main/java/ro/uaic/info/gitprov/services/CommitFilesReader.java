@@ -0,0 +1,33 @@
+package ro.uaic.info.gitprov.services;
+
+import org.eclipse.egit.github.core.RepositoryCommit;
+
+import java.io.IOException;
+
+/**
+ * Reads the commits of a history along with the files they changed, one commit after another.
+ */
+public interface CommitFilesReader extends AutoCloseable {
+
+    /**
+     * Whether there are commits left to read
+     *
+     * @return whether there are commits left
+     * @throws IOException io exception
+     */
+    boolean hasNext() throws IOException;
+
+    /**
+     * Reads the next commit, whose files are set
+     *
+     * @return the commit
+     * @throws IOException io exception
+     */
+    RepositoryCommit next() throws IOException;
+
+    /**
+     * Releases the resources held by the reader
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,35 @@
+package ro.uaic.info.gitprov.services;
+
+import org.eclipse.egit.github.core.RepositoryCommit;
+
+import java.io.IOException;
+
+/**
+ * The commits of a repository made after a given commit, read once from the oldest to the newest. The commits are
+ * read as they are consumed, so a history never has to be held in memory at once.
+ */
+public interface CommitHistory {
+
+    /**
+     * Gets the number of commits of the history
+     *
+     * @return the number of commits
+     */
+    int size();
+
+    /**
+     * Whether there are commits left to read
+     *
+     * @return whether there are commits left
+     * @throws IOException io exception
+     */
+    boolean hasNext() throws IOException;
+
+    /**
+     * Reads the next commit
+     *
+     * @return the commit
+     * @throws IOException io exception
+     */
+    RepositoryCommit next() throws IOException;
+}
@@ -0,0 +1,94 @@
+package ro.uaic.info.gitprov.services;
+
+import org.eclipse.egit.github.core.Contributor;
+import org.eclipse.egit.github.core.User;
+import ro.uaic.info.gitprov.models.HistoryScope;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The source of the history of a repository from which the provenance records are generated. The commits, contributors
+ * and users are described with the Github API model, whatever the place they are read from.
+ */
+public interface CommitSource extends Closeable {
+
+    /**
+     * Gets the contributors of the repository
+     *
+     * @return the contributors
+     * @throws IOException io exception
+     */
+    List<Contributor> getContributors() throws IOException;
+
+    /**
+     * Gets the profile of a contributor
+     *
+     * @param login the login of the contributor
+     * @return the user
+     * @throws IOException io exception
+     */
+    User getUser(String login) throws IOException;
+
+    /**
+     * Gets the profiles of several contributors
+     *
+     * @param logins the logins of the contributors
+     * @return the users, by login
+     * @throws IOException io exception
+     */
+    default Map<String, User> getUsers(List<String> logins) throws IOException {
+        Map<String, User> result = new LinkedHashMap<>();
+        for (String login : logins) {
+            result.put(login, getUser(login));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the sha of the newest commit of the repository
+     *
+     * @return the sha, or null if the repository has no commits
+     * @throws IOException io exception
+     */
+    String getHeadSha() throws IOException;
+
+    /**
+     * Opens the history of the commits made after a given commit, read from the oldest to the newest
+     *
+     * @param lastCommitSha the sha of the last known commit, or null for the whole history
+     * @return the history, or null if the last known commit is not part of the history
+     * @throws IOException io exception
+     */
+    CommitHistory getCommitsSince(String lastCommitSha) throws IOException;
+
+    /**
+     * Opens the history of the commits within a scope, read from the oldest to the newest, listing only those commits
+     *
+     * @param scope the scope
+     * @return the history, or null if the base or the head of the scope is not part of the history
+     * @throws IOException io exception
+     */
+    CommitHistory getCommits(HistoryScope scope) throws IOException;
+
+    /**
+     * Gets the last commit that changed a file, among a commit and the commits it is reachable from
+     *
+     * @param filename the name of the file
+     * @param sha      the sha of the commit the search starts from
+     * @return the sha of the commit, or null if the file was never changed
+     * @throws IOException io exception
+     */
+    String getLastChange(String filename, String sha) throws IOException;
+
+    /**
+     * Opens a reader of the commits of a history along with their changed files
+     *
+     * @param history the history, read by the reader
+     * @return the reader
+     */
+    CommitFilesReader readFiles(CommitHistory history);
+}
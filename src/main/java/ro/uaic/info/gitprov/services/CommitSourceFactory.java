@@ -0,0 +1,97 @@
+package ro.uaic.info.gitprov.services;
+
+import org.apache.log4j.Logger;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.service.CommitService;
+import org.eclipse.egit.github.core.service.RepositoryService;
+import org.eclipse.egit.github.core.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Chooses where the history of a repository is read from. A repository mirrored in the configured mirrors directory,
+ * as {owner}/{name}.git or {owner}/{name}, is read locally, any other repository is read through the Github API.
+ */
+@Service
+public class CommitSourceFactory {
+
+    /**
+     * The constant logger.
+     */
+    final static Logger logger = Logger.getLogger(CommitSourceFactory.class);
+
+    @Autowired
+    private CommitService commitService;
+
+    @Autowired
+    private RepositoryService repositoryService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserCache userCache;
+
+    /**
+     * The pool on which the files of the commits are fetched from the Github API.
+     */
+    @Autowired
+    private ExecutorService commitFetchExecutor;
+
+    /**
+     * The number of commits whose files are fetched ahead of the one being processed.
+     */
+    @Value("${gitprov.fetch.prefetch-window:32}")
+    private int prefetchWindow;
+
+    /**
+     * The directory holding the local mirrors, empty if there are none.
+     */
+    @Value("${gitprov.mirrors.directory:}")
+    private String mirrorsDirectory;
+
+    /**
+     * Gets the source of the history of a repository
+     *
+     * @param repository the repository
+     * @return the commit source
+     * @throws IOException io exception
+     */
+    public CommitSource getCommitSource(Repository repository) throws IOException {
+        File mirror = getMirror(repository.getOwner().getLogin(), repository.getName());
+
+        if (mirror != null) {
+            logger.info("Reading " + repository.generateId() + " from " + mirror);
+            return new LocalCommitSource(mirror);
+        }
+
+        return new GithubCommitSource(repository, commitService, repositoryService, userService, userCache, commitFetchExecutor, prefetchWindow);
+    }
+
+    /**
+     * Finds the local mirror of a repository
+     *
+     * @param owner the owner of the repository
+     * @param name  the name of the repository
+     * @return the directory of the mirror, or null if the repository is not mirrored
+     */
+    private File getMirror(String owner, String name) {
+        if (mirrorsDirectory.isEmpty()) {
+            return null;
+        }
+
+        File ownerDirectory = new File(mirrorsDirectory, owner);
+        for (File candidate : new File[]{new File(ownerDirectory, name + ".git"), new File(ownerDirectory, name)}) {
+            if (candidate.isDirectory()) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,315 @@
+package ro.uaic.info.gitprov.services;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Caches the written provenance documents, by repository, head commit and content type, so a document is generated
+ * again only when the repository changes. The least recently used documents are kept in memory up to a total size,
+ * the larger ones and the ones evicted from memory are kept in files, also up to a total size.
+ */
+@Service
+public class DocumentCache {
+
+    /**
+     * The constant logger.
+     */
+    final static Logger logger = Logger.getLogger(DocumentCache.class);
+
+    /**
+     * The extension of the files holding cached documents.
+     */
+    private static final String FILE_EXTENSION = ".document";
+
+    /**
+     * The total size of the documents kept in memory.
+     */
+    @Value("${gitprov.cache.memory-size:67108864}")
+    private long memorySize;
+
+    /**
+     * The size from which a document is kept in a file rather than in memory.
+     */
+    @Value("${gitprov.cache.memory-entry-size:8388608}")
+    private long memoryEntrySize;
+
+    /**
+     * The total size of the documents kept in files.
+     */
+    @Value("${gitprov.cache.disk-size:1073741824}")
+    private long diskSize;
+
+    /**
+     * The directory of the files, a temporary directory if empty.
+     */
+    @Value("${gitprov.cache.directory:}")
+    private String directory;
+
+    private File cacheDirectory;
+
+    /**
+     * The documents kept in memory and in files, from the least to the most recently used.
+     */
+    private final LinkedHashMap<String, byte[]> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, File> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryUsed;
+    private long diskUsed;
+
+    /**
+     * Prepares the directory of the files, removing the ones left by a previous run.
+     *
+     * @throws IOException io exception
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (directory.isEmpty()) {
+            cacheDirectory = Files.createTempDirectory("gitprov-cache").toFile();
+        } else {
+            cacheDirectory = new File(directory);
+            cacheDirectory.mkdirs();
+
+            File[] staleFiles = cacheDirectory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+            if (staleFiles != null) {
+                for (File staleFile : staleFiles) {
+                    Files.deleteIfExists(staleFile.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the key of a document
+     *
+     * @param owner       the owner of the repository
+     * @param name        the name of the repository
+     * @param headSha     the sha of the head commit of the repository
+     * @param contentType the content type of the document
+     * @return the key
+     */
+    public static String getKey(String owner, String name, String headSha, String contentType) {
+        return owner + "/" + name + "@" + headSha + ";" + contentType;
+    }
+
+    /**
+     * Gets the entity tag of a document, which changes with the head commit and the content type
+     *
+     * @param headSha     the sha of the head commit of the repository
+     * @param contentType the content type of the document
+     * @return the entity tag, quoted
+     */
+    public static String getETag(String headSha, String contentType) {
+        return "\"" + headSha + "-" + contentType.replaceAll("[^A-Za-z0-9]", "-") + "\"";
+    }
+
+    /**
+     * Writes a cached document to a stream
+     *
+     * @param key          the key of the document
+     * @param outputStream the stream
+     * @return whether the document was cached
+     * @throws IOException io exception
+     */
+    public boolean writeTo(String key, OutputStream outputStream) throws IOException {
+        byte[] content;
+        File file = null;
+
+        synchronized (this) {
+            content = memoryEntries.get(key);
+            if (content == null) {
+                file = diskEntries.get(key);
+            }
+        }
+
+        if (content != null) {
+            outputStream.write(content);
+            return true;
+        }
+
+        if (file != null) {
+            try (InputStream inputStream = new FileInputStream(file)) {
+                copy(inputStream, outputStream);
+                return true;
+            } catch (FileNotFoundException e) {
+                // evicted in the meantime
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Opens an entry that writes a document to a stream and keeps a copy of it. The copy is cached only if the entry
+     * is completed before being closed.
+     *
+     * @param key          the key of the document
+     * @param outputStream the stream the document is written to
+     * @return the entry
+     */
+    public Entry newEntry(String key, OutputStream outputStream) {
+        return new Entry(key, outputStream);
+    }
+
+    private synchronized void putInMemory(String key, byte[] content) {
+        remove(key);
+        memoryEntries.put(key, content);
+        memoryUsed += content.length;
+    }
+
+    private synchronized void putOnDisk(String key, File file) {
+        remove(key);
+        diskEntries.put(key, file);
+        diskUsed += file.length();
+
+        Iterator<Map.Entry<String, File>> iterator = diskEntries.entrySet().iterator();
+        while (diskUsed > diskSize && iterator.hasNext()) {
+            File evicted = iterator.next().getValue();
+            iterator.remove();
+            diskUsed -= evicted.length();
+            evicted.delete();
+        }
+    }
+
+    /**
+     * Removes the least recently used documents from memory until the memory limit is respected
+     *
+     * @return the removed documents, by key
+     */
+    private synchronized Map<String, byte[]> evictFromMemory() {
+        Map<String, byte[]> result = new LinkedHashMap<>();
+
+        Iterator<Map.Entry<String, byte[]>> iterator = memoryEntries.entrySet().iterator();
+        while (memoryUsed > memorySize && iterator.hasNext()) {
+            Map.Entry<String, byte[]> evicted = iterator.next();
+            iterator.remove();
+            memoryUsed -= evicted.getValue().length;
+            result.put(evicted.getKey(), evicted.getValue());
+        }
+
+        return result;
+    }
+
+    private synchronized void remove(String key) {
+        byte[] content = memoryEntries.remove(key);
+        if (content != null) {
+            memoryUsed -= content.length;
+        }
+
+        File file = diskEntries.remove(key);
+        if (file != null) {
+            diskUsed -= file.length();
+            file.delete();
+        }
+    }
+
+    private File newFile() throws IOException {
+        return File.createTempFile("entry", FILE_EXTENSION, cacheDirectory);
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * A document being written, copied in memory until it outgrows the memory entry size, then in a file.
+     */
+    public class Entry extends OutputStream {
+
+        private final String key;
+
+        private final OutputStream outputStream;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private File file;
+
+        private OutputStream fileStream;
+
+        private boolean completed;
+
+        private Entry(String key, OutputStream outputStream) {
+            this.key = key;
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            outputStream.write(b, off, len);
+
+            if (buffer != null && buffer.size() + len > memoryEntrySize) {
+                file = newFile();
+                fileStream = new BufferedOutputStream(new FileOutputStream(file));
+                buffer.writeTo(fileStream);
+                buffer = null;
+            }
+
+            if (buffer != null) {
+                buffer.write(b, off, len);
+            } else {
+                fileStream.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            outputStream.flush();
+        }
+
+        /**
+         * Marks the document as completely written, so it is cached when the entry is closed
+         */
+        public void complete() {
+            completed = true;
+        }
+
+        /**
+         * Caches the document if it was completed, otherwise discards the copy. The underlying stream is left open.
+         *
+         * @throws IOException io exception
+         */
+        @Override
+        public void close() throws IOException {
+            if (fileStream != null) {
+                fileStream.close();
+            }
+
+            if (!completed) {
+                if (file != null) {
+                    file.delete();
+                }
+                return;
+            }
+
+            if (buffer != null) {
+                putInMemory(key, buffer.toByteArray());
+            } else {
+                putOnDisk(key, file);
+            }
+
+            for (Map.Entry<String, byte[]> evicted : evictFromMemory().entrySet()) {
+                File evictedFile = newFile();
+                try (OutputStream evictedStream = new FileOutputStream(evictedFile)) {
+                    evictedStream.write(evicted.getValue());
+                }
+                putOnDisk(evicted.getKey(), evictedFile);
+            }
+
+            logger.info("Cached " + key);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ro.uaic.info.gitprov.services;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the requests made to the Github API on behalf of a piece of work, such as a bulk ingestion. The counter is
+ * bound to the thread doing the work, the tasks it hands to other threads carrying it along, and every request opened
+ * by the {@link RateLimitedGitHubClient} on a thread bound to a counter is counted by it. The responses served from the
+ * response cache without a request are not counted.
+ */
+public class GitHubRequestCounter {
+
+    /**
+     * The counter bound to the current thread, null if none.
+     */
+    private static final ThreadLocal<GitHubRequestCounter> current = new ThreadLocal<>();
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Runs a task with the counter bound to the current thread
+     *
+     * @param task the task
+     */
+    public void run(Runnable task) {
+        GitHubRequestCounter previous = current.get();
+        current.set(this);
+        try {
+            task.run();
+        } finally {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * Gets the number of requests counted
+     *
+     * @return the number of requests
+     */
+    public int getCount() {
+        return count.get();
+    }
+
+    /**
+     * Wraps a task handed to another thread, so it runs with the counter bound to the thread handing it
+     *
+     * @param task the task
+     * @param <T>  the type of the result of the task
+     * @return the wrapped task, the task itself if no counter is bound to the current thread
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        GitHubRequestCounter counter = current.get();
+        if (counter == null) {
+            return task;
+        }
+
+        return () -> {
+            GitHubRequestCounter previous = current.get();
+            current.set(counter);
+            try {
+                return task.call();
+            } finally {
+                current.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Counts a request made on the current thread, if a counter is bound to it
+     */
+    static void countRequest() {
+        GitHubRequestCounter counter = current.get();
+        if (counter != null) {
+            counter.count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package ro.uaic.info.gitprov.services;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the responses of the Github API in files, up to a total size, the least recently used ones being removed
+ * first. The responses addressed by the sha of a commit, a tree or a blob never change and are served without any
+ * request, the other ones are kept with their entity tag and revalidated with a conditional request, which does not
+ * count against the rate limit when the response did not change. As what a token may see, and so the entity tag of
+ * its responses, depends on the token, these are kept apart for every token, under a fingerprint of it. The files are
+ * kept between runs.
+ */
+public class GitHubResponseCache {
+
+    /**
+     * The constant logger.
+     */
+    final static Logger logger = Logger.getLogger(GitHubResponseCache.class);
+
+    /**
+     * The extension of the files holding cached responses.
+     */
+    private static final String FILE_EXTENSION = ".response";
+
+    /**
+     * The uris of the resources addressed by sha, which never change.
+     */
+    private static final Pattern IMMUTABLE_URI = Pattern.compile("/repos/[^/]+/[^/]+/(commits|git/commits|git/trees|git/blobs)/[0-9a-f]{40}([?].*)?");
+
+    /**
+     * The fingerprint of the requests made without a token.
+     */
+    private static final String ANONYMOUS = "anonymous";
+
+    /**
+     * The number of hexadecimal digits of the digest of a token kept in its fingerprint.
+     */
+    private static final int FINGERPRINT_LENGTH = 16;
+
+    private final File directory;
+
+    /**
+     * The total size of the files.
+     */
+    private final long maxSize;
+
+    /**
+     * The cached responses, from the least to the most recently used.
+     */
+    private final LinkedHashMap<String, Response> responses = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    /**
+     * Instantiates a new Github response cache, loading the responses cached by a previous run
+     *
+     * @param directory the directory of the files
+     * @param maxSize   the total size of the files
+     */
+    public GitHubResponseCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        directory.mkdirs();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                String key = inputStream.readUTF();
+                Response response = new Response(file, inputStream.readBoolean(), emptyToNull(inputStream.readUTF()), emptyToNull(inputStream.readUTF()));
+                responses.put(key, response);
+                size += file.length();
+            } catch (IOException e) {
+                logger.warn("Could not read cached response " + file, e);
+                file.delete();
+            }
+        }
+
+        evict();
+        logger.info("Loaded " + responses.size() + " cached Github responses");
+    }
+
+    /**
+     * Gets the key of a response, which includes the fingerprint of the token of the request unless the resource never
+     * changes
+     *
+     * @param uri    the uri of the request
+     * @param accept the content type accepted by the request, null for the default one
+     * @param token  the token the request is made with, null if unauthenticated
+     * @return the key
+     */
+    public static String getKey(String uri, String accept, String token) {
+        String key = accept == null ? uri : uri + ";" + accept;
+        if (isImmutable(uri)) {
+            return key;
+        }
+
+        return key + ";" + (token == null ? ANONYMOUS : digest("SHA-256", token).substring(0, FINGERPRINT_LENGTH));
+    }
+
+    /**
+     * Whether the resource at an uri never changes
+     *
+     * @param uri the uri of the request
+     * @return whether the resource is addressed by sha
+     */
+    public static boolean isImmutable(String uri) {
+        return IMMUTABLE_URI.matcher(uri).matches();
+    }
+
+    /**
+     * Gets a cached response
+     *
+     * @param key the key of the response
+     * @return the response, null if not cached
+     */
+    public synchronized Response get(String key) {
+        return responses.get(key);
+    }
+
+    /**
+     * Caches a response
+     *
+     * @param key       the key of the response
+     * @param immutable whether the response never changes
+     * @param eTag      the entity tag of the response, null if none
+     * @param link      the link header of the response, null if none
+     * @param body      the body of the response
+     * @throws IOException io exception
+     */
+    public void put(String key, boolean immutable, String eTag, String link, byte[] body) throws IOException {
+        File file = new File(directory, getFileName(key));
+        File temporaryFile = File.createTempFile("response", ".tmp", directory);
+
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                outputStream.writeUTF(key);
+                outputStream.writeBoolean(immutable);
+                outputStream.writeUTF(eTag == null ? "" : eTag);
+                outputStream.writeUTF(link == null ? "" : link);
+                outputStream.write(body);
+            }
+
+            synchronized (this) {
+                // The size of the previous response is taken before the move replaces its file
+                Response previous = responses.get(key);
+                long previousSize = previous == null ? 0 : previous.file.length();
+
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                size -= previousSize;
+                responses.put(key, new Response(file, immutable, eTag, link));
+                size += file.length();
+                evict();
+            }
+        } finally {
+            // Left behind only if the response could not be written or moved in place
+            temporaryFile.delete();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Response>> iterator = responses.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            File evicted = iterator.next().getValue().file;
+            iterator.remove();
+            size -= evicted.length();
+            evicted.delete();
+        }
+    }
+
+    private static String getFileName(String key) {
+        return digest("SHA-1", key) + FILE_EXTENSION;
+    }
+
+    private static String digest(String algorithm, String value) {
+        try {
+            StringBuilder result = new StringBuilder();
+            for (byte b : MessageDigest.getInstance(algorithm).digest(value.getBytes(StandardCharsets.UTF_8))) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * A cached response, whose body is read from its file.
+     */
+    public static class Response {
+
+        private final File file;
+
+        private final boolean immutable;
+
+        private final String eTag;
+
+        private final String link;
+
+        private Response(File file, boolean immutable, String eTag, String link) {
+            this.file = file;
+            this.immutable = immutable;
+            this.eTag = eTag;
+            this.link = link;
+        }
+
+        public boolean isImmutable() {
+            return immutable;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getLink() {
+            return link;
+        }
+
+        /**
+         * Reads the body of the response
+         *
+         * @return the body, null if the response was evicted in the meantime
+         * @throws IOException io exception
+         */
+        public byte[] readBody() throws IOException {
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                inputStream.readUTF();
+                inputStream.readBoolean();
+                inputStream.readUTF();
+                inputStream.readUTF();
+
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+                return body.toByteArray();
+            } catch (FileNotFoundException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package ro.uaic.info.gitprov.services;
+
+import com.google.gson.reflect.TypeToken;
+import org.eclipse.egit.github.core.Commit;
+import org.eclipse.egit.github.core.CommitUser;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.RepositoryCommitCompare;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.PagedRequest;
+import org.eclipse.egit.github.core.client.RequestException;
+import ro.uaic.info.gitprov.models.HistoryScope;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The history of a repository read page by page through the Github API. The API lists the commits from the newest, so
+ * the pages are read from the last one back to the first one, each of them from its end. The pages after the first one
+ * are requested for the head commit seen on the first one, so they do not shift when commits are pushed meanwhile.
+ * At most two pages are held at once: the first one, read to find the head commit, and the one being read. The
+ * commits outside the time window of a scope are left out by the API itself, so a scoped history costs as many
+ * requests as it has pages.
+ * <p>
+ * The commits after a base commit are the ones reachable from the head commit and not from the base, as git lists
+ * base..head. They cannot be cut from the listing at the base, as the listing is in date order and the commits of a
+ * merged branch older than the base are listed after it, so they are read from the comparison of the base and the
+ * head. They are held at once, being usually few, and read so every commit comes after its parents. So they fit in
+ * memory, a comparison of more than a maximum number of commits is refused before its commits are read.
+ */
+public class GithubCommitHistory implements CommitHistory {
+
+    private static final Type COMMITS_TYPE = new TypeToken<List<RepositoryCommit>>() {
+    }.getType();
+
+    private static final Pattern PAGE_PARAMETER = Pattern.compile("[?&]page=(\\d+)");
+
+    /**
+     * The format of the dates bounding the time window, in UTC as the API expects.
+     */
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    /**
+     * The statuses of a comparison whose base is reachable from its head.
+     */
+    private static final List<String> BASE_REACHABLE_STATUSES = Arrays.asList("ahead", "identical");
+
+    /**
+     * The status of a request for an unknown base or head, or for unrelated ones.
+     */
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
+    /**
+     * The number of commits a comparison may have, as they are held at once.
+     */
+    public static final int MAX_RANGE_COMMITS = 10000;
+
+    private final GitHubClient client;
+
+    private final String uri;
+
+    private final int pageSize;
+
+    /**
+     * The number of commits a comparison may have.
+     */
+    private final int maxRangeCommits;
+
+    /**
+     * The parameters of the requests bounding the history, other than its head commit.
+     */
+    private final Map<String, String> params = new HashMap<>();
+
+    /**
+     * The sha or the branch of the head commit, the default branch if null, before the first page is read.
+     */
+    private final String head;
+
+    /**
+     * The sha of the head commit, the pages being requested from it.
+     */
+    private String headSha;
+
+    private List<RepositoryCommit> firstPage;
+
+    private int size;
+
+    /**
+     * The number of the page being read.
+     */
+    private int page;
+
+    /**
+     * The commits of the page being read, from the newest.
+     */
+    private List<RepositoryCommit> commits;
+
+    /**
+     * The index of the commit read before the next one, on the page being read.
+     */
+    private int index;
+
+    private GithubCommitHistory(GitHubClient client, IRepositoryIdProvider repository, HistoryScope scope, int pageSize, int maxRangeCommits) {
+        this.client = client;
+        this.uri = "/repos/" + repository.generateId() + "/commits";
+        this.pageSize = pageSize;
+        this.maxRangeCommits = maxRangeCommits;
+        this.head = scope.getHead();
+
+        DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        if (scope.getSince() != null) {
+            params.put("since", dateFormat.format(scope.getSince()));
+        }
+        if (scope.getUntil() != null) {
+            params.put("until", dateFormat.format(scope.getUntil()));
+        }
+        if (scope.getPath() != null) {
+            params.put("path", scope.getPath());
+        }
+    }
+
+    /**
+     * Opens the history of a repository within a scope. Without a base commit, only the first and the last pages are
+     * read before the commits. With a base commit, the commits after it are compared first, then the ones outside the
+     * time window are left out and, with a path, the ones not listed for the path.
+     *
+     * @param client     the Github client
+     * @param repository the repository
+     * @param scope      the scope
+     * @param pageSize   the number of commits requested in a page
+     * @return the history, or null if the base commit is unknown or not reachable from the head commit
+     * @throws RangeTooLargeException if there are more than {@link #MAX_RANGE_COMMITS} commits after the base commit
+     * @throws IOException             io exception
+     */
+    public static CommitHistory open(GitHubClient client, IRepositoryIdProvider repository, HistoryScope scope, int pageSize) throws IOException {
+        return open(client, repository, scope, pageSize, MAX_RANGE_COMMITS);
+    }
+
+    /**
+     * Opens the history of a repository within a scope, comparing at most a number of commits after its base commit
+     *
+     * @param client          the Github client
+     * @param repository      the repository
+     * @param scope           the scope
+     * @param pageSize        the number of commits requested in a page
+     * @param maxRangeCommits the number of commits a comparison may have
+     * @return the history, or null if the base commit is unknown or not reachable from the head commit
+     * @throws RangeTooLargeException if there are more than maxRangeCommits commits after the base commit
+     * @throws IOException             io exception
+     */
+    public static CommitHistory open(GitHubClient client, IRepositoryIdProvider repository, HistoryScope scope, int pageSize, int maxRangeCommits) throws IOException {
+        GithubCommitHistory history = new GithubCommitHistory(client, repository, scope, pageSize, maxRangeCommits);
+        if (scope.getBase() != null) {
+            return history.openRange(repository, scope);
+        }
+
+        GitHubResponse response = history.request(1);
+        history.firstPage = getCommits(response);
+        if (history.firstPage.isEmpty()) {
+            history.commits = history.firstPage;
+            return history;
+        }
+        history.headSha = history.firstPage.get(0).getSha();
+        history.moveTo(getPageNumber(response.getLast(), 1));
+        return history;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index > 0 || page > 1;
+    }
+
+    @Override
+    public RepositoryCommit next() throws IOException {
+        if (index == 0) {
+            page--;
+            commits = getPage(page);
+            index = commits.size();
+        }
+
+        return commits.get(--index);
+    }
+
+    /**
+     * Reads the commits after the base of a scope, up to its head
+     *
+     * @param repository the repository
+     * @param scope      the scope
+     * @return the history, or null if the base commit is unknown or not reachable from the head commit
+     * @throws RangeTooLargeException if the comparison has too many commits
+     * @throws IOException             io exception
+     */
+    private CommitHistory openRange(IRepositoryIdProvider repository, HistoryScope scope) throws IOException {
+        if (head == null) {
+            List<RepositoryCommit> newest = getCommits(client.get(newRequest(uri, COMMITS_TYPE, Collections.emptyMap(), 1, 1)));
+            if (newest.isEmpty()) {
+                return null;
+            }
+            headSha = newest.get(0).getSha();
+        } else {
+            headSha = head;
+        }
+
+        List<RepositoryCommit> result = compare(repository, scope.getBase());
+        if (result == null) {
+            return null;
+        }
+
+        result.removeIf(commit -> !isWithin(commit, scope.getSince(), scope.getUntil()));
+        if (scope.getPath() != null && !result.isEmpty()) {
+            Set<String> listed = listShas(result.stream().map(GithubCommitHistory::getDate).filter(Objects::nonNull).min(Date::compareTo).orElse(null));
+            result.removeIf(commit -> !listed.contains(commit.getSha()));
+        }
+
+        return new ListedHistory(sortParentsFirst(result));
+    }
+
+    /**
+     * Reads the commits reachable from the head commit and not from a base commit, page by page
+     *
+     * @param repository the repository
+     * @param base       the sha or the branch of the base commit
+     * @return the commits, or null if the base commit is unknown or not reachable from the head commit
+     * @throws RangeTooLargeException if the comparison has too many commits
+     * @throws IOException             io exception
+     */
+    private List<RepositoryCommit> compare(IRepositoryIdProvider repository, String base) throws IOException {
+        String compareUri = "/repos/" + repository.generateId() + "/compare/" + base + "..." + headSha;
+        List<RepositoryCommit> result = new ArrayList<>();
+
+        for (int comparePage = 1; ; comparePage++) {
+            RepositoryCommitCompare comparison;
+            try {
+                comparison = (RepositoryCommitCompare) client.get(newRequest(compareUri, RepositoryCommitCompare.class, Collections.emptyMap(), comparePage, pageSize)).getBody();
+            } catch (RequestException e) {
+                if (e.getStatus() == HttpURLConnection.HTTP_NOT_FOUND || e.getStatus() == HTTP_UNPROCESSABLE_ENTITY) {
+                    return null;
+                }
+                throw e;
+            }
+
+            if (comparison == null || !BASE_REACHABLE_STATUSES.contains(comparison.getStatus())) {
+                return null;
+            }
+            if (comparison.getTotalCommits() > maxRangeCommits) {
+                throw new RangeTooLargeException("The range " + base + ".." + headSha + " of " + repository.generateId() + " has "
+                        + comparison.getTotalCommits() + " commits, more than the maximum of " + maxRangeCommits);
+            }
+
+            List<RepositoryCommit> pageCommits = comparison.getCommits() == null ? Collections.emptyList() : comparison.getCommits();
+            result.addAll(pageCommits);
+            if (pageCommits.isEmpty() || result.size() >= comparison.getTotalCommits()) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Lists the shas of the commits from the head commit within the parameters of the history, page by page
+     *
+     * @param oldest the date of the oldest commit of interest, which bounds the listing unless the scope starts later
+     * @return the shas
+     * @throws IOException io exception
+     */
+    private Set<String> listShas(Date oldest) throws IOException {
+        Map<String, String> listParams = new HashMap<>(params);
+        listParams.put("sha", headSha);
+        if (oldest != null && !listParams.containsKey("since")) {
+            DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            listParams.put("since", dateFormat.format(oldest));
+        }
+
+        Set<String> result = new HashSet<>();
+        for (int listPage = 1; ; listPage++) {
+            GitHubResponse response = client.get(newRequest(uri, COMMITS_TYPE, listParams, listPage, pageSize));
+            getCommits(response).forEach(commit -> result.add(commit.getSha()));
+            if (response.getNext() == null) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Sorts commits so every commit comes after its parents, keeping otherwise the order they are given in
+     *
+     * @param commits the commits
+     * @return the sorted commits
+     */
+    private static List<RepositoryCommit> sortParentsFirst(List<RepositoryCommit> commits) {
+        Map<String, RepositoryCommit> bySha = new HashMap<>();
+        commits.forEach(commit -> bySha.put(commit.getSha(), commit));
+
+        List<RepositoryCommit> result = new ArrayList<>(commits.size());
+        Set<String> added = new HashSet<>();
+        Deque<RepositoryCommit> pending = new ArrayDeque<>();
+
+        for (RepositoryCommit commit : commits) {
+            pending.push(commit);
+            while (!pending.isEmpty()) {
+                RepositoryCommit top = pending.peek();
+                RepositoryCommit parent = null;
+                if (top.getParents() != null) {
+                    for (Commit candidate : top.getParents()) {
+                        RepositoryCommit parentCommit = bySha.get(candidate.getSha());
+                        if (parentCommit != null && !added.contains(parentCommit.getSha())) {
+                            parent = parentCommit;
+                            break;
+                        }
+                    }
+                }
+
+                if (parent != null) {
+                    pending.push(parent);
+                } else {
+                    pending.pop();
+                    if (added.add(top.getSha())) {
+                        result.add(top);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isWithin(RepositoryCommit commit, Date since, Date until) {
+        Date date = getDate(commit);
+        return date == null || ((since == null || !date.before(since)) && (until == null || !date.after(until)));
+    }
+
+    private static Date getDate(RepositoryCommit commit) {
+        CommitUser committer = commit.getCommit() == null ? null : commit.getCommit().getCommitter();
+        return committer == null ? null : committer.getDate();
+    }
+
+    /**
+     * Starts reading the whole history from the end of its last page
+     *
+     * @param lastPage the number of the last page
+     * @throws IOException io exception
+     */
+    private void moveTo(int lastPage) throws IOException {
+        page = lastPage;
+        commits = getPage(lastPage);
+        index = commits.size();
+        size = (lastPage - 1) * pageSize + commits.size();
+    }
+
+    private List<RepositoryCommit> getPage(int page) throws IOException {
+        return page == 1 ? firstPage : getCommits(request(page));
+    }
+
+    private GitHubResponse request(int page) throws IOException {
+        Map<String, String> requestParams = new HashMap<>(params);
+        if (headSha != null || head != null) {
+            requestParams.put("sha", headSha != null ? headSha : head);
+        }
+
+        return client.get(newRequest(uri, COMMITS_TYPE, requestParams, page, pageSize));
+    }
+
+    private static PagedRequest<Object> newRequest(String uri, Type type, Map<String, String> params, int page, int pageSize) {
+        PagedRequest<Object> request = new PagedRequest<>(page, pageSize);
+        request.setUri(uri);
+        request.setType(type);
+        request.setParams(new HashMap<>(params));
+        return request;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<RepositoryCommit> getCommits(GitHubResponse response) {
+        List<RepositoryCommit> commits = (List<RepositoryCommit>) response.getBody();
+        return commits == null ? Collections.emptyList() : commits;
+    }
+
+    private static int getPageNumber(String uri, int defaultPage) {
+        if (uri == null) {
+            return defaultPage;
+        }
+
+        Matcher matcher = PAGE_PARAMETER.matcher(uri);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : defaultPage;
+    }
+
+    /**
+     * A history whose commits are all held, read in the order given.
+     */
+    private static class ListedHistory implements CommitHistory {
+
+        private final Iterator<RepositoryCommit> iterator;
+
+        private final int size;
+
+        private ListedHistory(List<RepositoryCommit> commits) {
+            this.iterator = commits.iterator();
+            this.size = commits.size();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public RepositoryCommit next() {
+            return iterator.next();
+        }
+    }
+}
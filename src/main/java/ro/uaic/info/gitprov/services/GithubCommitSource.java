@@ -0,0 +1,214 @@
+package ro.uaic.info.gitprov.services;
+
+import org.apache.log4j.Logger;
+import org.eclipse.egit.github.core.Contributor;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.NoSuchPageException;
+import org.eclipse.egit.github.core.service.CommitService;
+import org.eclipse.egit.github.core.service.RepositoryService;
+import org.eclipse.egit.github.core.service.UserService;
+import ro.uaic.info.gitprov.models.HistoryScope;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the history of a repository through the Github API.
+ */
+public class GithubCommitSource implements CommitSource {
+
+    /**
+     * The constant logger.
+     */
+    final static Logger logger = Logger.getLogger(GithubCommitSource.class);
+
+    /**
+     * The number of commits requested in a page when listing the history of a repository.
+     */
+    private static final int COMMITS_PAGE_SIZE = 100;
+
+    private final Repository repository;
+    private final CommitService commitService;
+    private final RepositoryService repositoryService;
+    private final UserService userService;
+
+    /**
+     * The profiles of the users shared with the other sources.
+     */
+    private final UserCache userCache;
+
+    /**
+     * The pool on which the files of the commits and the missing profiles are fetched.
+     */
+    private final ExecutorService commitFetchExecutor;
+
+    /**
+     * The number of commits whose files are fetched ahead of the one being processed.
+     */
+    private final int prefetchWindow;
+
+    /**
+     * Instantiates a new Github commit source.
+     *
+     * @param repository          the repository
+     * @param commitService       the commit service
+     * @param repositoryService   the repository service
+     * @param userService         the user service
+     * @param userCache           the profiles of the users shared with the other sources
+     * @param commitFetchExecutor the pool on which the files of the commits and the missing profiles are fetched
+     * @param prefetchWindow      the number of commits whose files are fetched ahead
+     */
+    public GithubCommitSource(Repository repository, CommitService commitService, RepositoryService repositoryService, UserService userService, UserCache userCache, ExecutorService commitFetchExecutor, int prefetchWindow) {
+        this.repository = repository;
+        this.commitService = commitService;
+        this.repositoryService = repositoryService;
+        this.userService = userService;
+        this.userCache = userCache;
+        this.commitFetchExecutor = commitFetchExecutor;
+        this.prefetchWindow = prefetchWindow;
+    }
+
+    @Override
+    public List<Contributor> getContributors() throws IOException {
+        return repositoryService.getContributors(repository, false);
+    }
+
+    @Override
+    public User getUser(String login) throws IOException {
+        User user = userCache.get(login);
+        if (user == null) {
+            user = userService.getUser(login);
+            userCache.put(login, user);
+        }
+        return user;
+    }
+
+    /**
+     * Gets the profiles from the cache, fetching the missing ones at the same time
+     *
+     * @param logins the logins of the contributors
+     * @return the users, by login
+     * @throws IOException io exception
+     */
+    @Override
+    public Map<String, User> getUsers(List<String> logins) throws IOException {
+        Map<String, User> result = new LinkedHashMap<>();
+        Map<String, Future<User>> missing = new LinkedHashMap<>();
+
+        for (String login : logins) {
+            User user = userCache.get(login);
+            if (user != null) {
+                result.put(login, user);
+            } else if (!missing.containsKey(login)) {
+                missing.put(login, commitFetchExecutor.submit(GitHubRequestCounter.propagate(() -> userService.getUser(login))));
+            }
+        }
+
+        try {
+            for (Map.Entry<String, Future<User>> entry : missing.entrySet()) {
+                User user = entry.getValue().get();
+                userCache.put(entry.getKey(), user);
+                result.put(entry.getKey(), user);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching users");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            missing.values().forEach(future -> future.cancel(true));
+        }
+
+        return result;
+    }
+
+    /**
+     * Requests the first page of the history, holding the newest commit only
+     *
+     * @return the sha, or null if the repository has no commits
+     * @throws IOException io exception
+     */
+    @Override
+    public String getHeadSha() throws IOException {
+        try {
+            Collection<RepositoryCommit> page = commitService.pageCommits(repository, 1).next();
+            return page.isEmpty() ? null : page.iterator().next().getSha();
+        } catch (NoSuchPageException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Opens the whole history page by page, so only a page of commits is held at once, or compares the last known
+     * commit with the head, so the commits of branches merged since are included. When too many commits were pushed
+     * since the last known one to be compared, the whole history is read again instead.
+     *
+     * @param lastCommitSha the sha of the last known commit, or null for the whole history
+     * @return the history, or null if the last known commit is unknown, not reachable from the head commit or too far
+     * behind it
+     * @throws IOException io exception
+     */
+    @Override
+    public CommitHistory getCommitsSince(String lastCommitSha) throws IOException {
+        HistoryScope scope = new HistoryScope();
+        scope.setBase(lastCommitSha);
+        try {
+            return getCommits(scope);
+        } catch (RangeTooLargeException e) {
+            logger.info(e.getMessage() + ", reading the whole history instead");
+            return null;
+        }
+    }
+
+    /**
+     * Opens the history page by page, the time window and the path being applied by the API. The commits after a base
+     * are the ones reachable from the head and not from the base, read from the comparison of the base and the head.
+     *
+     * @param scope the scope
+     * @return the history, or null if the base commit is unknown or not reachable from the head commit
+     * @throws RangeTooLargeException if there are more than {@link GithubCommitHistory#MAX_RANGE_COMMITS} commits after
+     *                                the base commit
+     * @throws IOException            io exception
+     */
+    @Override
+    public CommitHistory getCommits(HistoryScope scope) throws IOException {
+        return GithubCommitHistory.open(commitService.getClient(), repository, scope, COMMITS_PAGE_SIZE);
+    }
+
+    /**
+     * Requests the first commit of the history of the file from the given commit
+     *
+     * @param filename the name of the file
+     * @param sha      the sha of the commit the search starts from
+     * @return the sha of the commit, or null if the file was never changed
+     * @throws IOException io exception
+     */
+    @Override
+    public String getLastChange(String filename, String sha) throws IOException {
+        try {
+            Collection<RepositoryCommit> page = commitService.pageCommits(repository, sha, filename, 1).next();
+            return page.isEmpty() ? null : page.iterator().next().getSha();
+        } catch (NoSuchPageException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public CommitFilesReader readFiles(CommitHistory history) {
+        return new CommitFilesPrefetcher(commitService, repository, commitFetchExecutor, history, prefetchWindow);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -91,4 +91,13 @@ public class GithubService {
         return repositoryService.getOrgRepositories(organization);
     }
 
+    /**
+     * Gets the number of requests to the Github API left until the rate limit resets, as of the last response.
+     *
+     * @return the number of requests, -1 if unknown
+     */
+    public int getRemainingRequests() {
+        return repositoryService.getClient().getRemainingRequests();
+    }
+
 }
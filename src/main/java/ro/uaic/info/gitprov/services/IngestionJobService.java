@@ -0,0 +1,278 @@
+package ro.uaic.info.gitprov.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.log4j.Logger;
+import org.eclipse.egit.github.core.Repository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ro.uaic.info.gitprov.models.GenerationState;
+import ro.uaic.info.gitprov.models.IngestionJob;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the jobs storing the provenance of repositories in the store on a bounded pool, in the background. Every job is
+ * saved in a file whenever its progress is stored, so the unfinished jobs are resumed after a restart: the generation
+ * state kept in the store lets a job continue from the last stored batch of commits.
+ */
+@Service
+public class IngestionJobService {
+
+    /**
+     * The constant logger.
+     */
+    final static Logger logger = Logger.getLogger(IngestionJobService.class);
+
+    /**
+     * The extension of the files holding the jobs.
+     */
+    private static final String FILE_EXTENSION = ".json";
+
+    @Autowired
+    private GithubService githubService;
+
+    @Autowired
+    private ProvenanceService provenanceService;
+
+    @Autowired
+    private StoreService storeService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The pool running the jobs.
+     */
+    @Autowired
+    private ExecutorService ingestionExecutor;
+
+    /**
+     * The directory of the files holding the jobs.
+     */
+    @Value("${gitprov.jobs.directory:jobs}")
+    private String directory;
+
+    /**
+     * The number of finished jobs kept, the oldest ones being forgotten.
+     */
+    @Value("${gitprov.jobs.max-finished:1000}")
+    private int maxFinished;
+
+    private File jobsDirectory;
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * The locks of the documents, so a repository is never stored by two runs at the same time.
+     */
+    private final Map<String, Object> documentLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the jobs saved by a previous run and resumes the unfinished ones.
+     *
+     * @throws IOException io exception
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        jobsDirectory = new File(directory);
+        jobsDirectory.mkdirs();
+
+        File[] files = jobsDirectory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        List<IngestionJob> unfinishedJobs = new ArrayList<>();
+        for (File file : files) {
+            try {
+                IngestionJob job = objectMapper.readValue(file, IngestionJob.class);
+                jobs.put(job.getId(), job);
+                if (!job.isFinished()) {
+                    unfinishedJobs.add(job);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read job " + file, e);
+            }
+        }
+
+        unfinishedJobs.sort(Comparator.comparingLong(IngestionJob::getCreatedAt));
+        for (IngestionJob job : unfinishedJobs) {
+            logger.info("Resuming job " + job.getId() + " for " + job.getOwner() + "/" + job.getName());
+            job.setPhase(IngestionJob.Phase.QUEUED);
+            try {
+                ingestionExecutor.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                fail(job, "Not resumed, the job queue is full");
+            }
+        }
+    }
+
+    /**
+     * Submits a job storing the provenance of a repository. If a job for the same repository is not finished yet, it
+     * is returned instead of a new one.
+     *
+     * @param owner        the owner of the repository
+     * @param name         the name of the repository
+     * @param provenanceNs the provenance namespace, the uri of the resource
+     * @return the job
+     * @throws IOException                io exception
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public synchronized IngestionJob submit(String owner, String name, String provenanceNs) throws IOException {
+        for (IngestionJob job : jobs.values()) {
+            if (!job.isFinished() && job.getOwner().equals(owner) && job.getName().equals(name)) {
+                return job;
+            }
+        }
+
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), owner, name, provenanceNs);
+        save(job);
+        jobs.put(job.getId(), job);
+
+        try {
+            ingestionExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            Files.deleteIfExists(getFile(job).toPath());
+            throw e;
+        }
+
+        forgetFinishedJobs();
+        return job;
+    }
+
+    /**
+     * Gets a job
+     *
+     * @param id the id of the job
+     * @return the job, null if it is unknown
+     */
+    public IngestionJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Stores the provenance of the commits of a repository pushed since it was last stored, waiting for any other run
+     * storing the same repository
+     *
+     * @param repository   the repository
+     * @param provenanceNs the provenance namespace, the uri of the resource
+     * @param progress     the listener of the progress, notified after every stored batch of commits
+     * @return whether there were new commits
+     * @throws IOException io exception
+     */
+    public boolean storeRepository(Repository repository, String provenanceNs, ProvenanceService.ProgressListener progress) throws IOException {
+        String documentName = repository.getOwner().getLogin() + "/" + repository.getName();
+
+        synchronized (documentLocks.computeIfAbsent(documentName, key -> new Object())) {
+            GenerationState state = storeService.getGenerationState(documentName);
+            StoreService.BatchWriter batchWriter = storeService.newBatchWriter(documentName, state);
+
+            return provenanceService.repositoryToBatches(repository, provenanceNs, state, batchWriter::write, progress);
+        }
+    }
+
+    /**
+     * Runs a job, saving it after every stored batch of commits
+     *
+     * @param job the job
+     */
+    private void run(IngestionJob job) {
+        String documentName = job.getOwner() + "/" + job.getName();
+
+        try {
+            job.setStartedAt(System.currentTimeMillis());
+            job.setPhase(IngestionJob.Phase.LISTING_COMMITS);
+            save(job);
+
+            Repository repository = githubService.getRepositoryByOwnerAndName(job.getOwner(), job.getName());
+            storeRepository(repository, job.getProvenanceNs(), new ProvenanceService.ProgressListener() {
+                @Override
+                public void commitsListed(int count) {
+                    job.commitsListed(count);
+                }
+
+                @Override
+                public void commitProcessed() {
+                    job.commitProcessed();
+                }
+
+                @Override
+                public void batchHandled() throws IOException {
+                    save(job);
+                }
+            });
+
+            job.setPhase(IngestionJob.Phase.COMPLETED);
+            job.setFinishedAt(System.currentTimeMillis());
+            save(job);
+            logger.info("Stored " + documentName + ", " + job.getProcessedCommits() + " commits");
+        } catch (Exception e) {
+            logger.error("Could not store " + documentName, e);
+            fail(job, e.getMessage() == null ? e.getClass().getName() : e.getMessage());
+        }
+    }
+
+    private void fail(IngestionJob job, String failure) {
+        job.setFailure(failure);
+        job.setPhase(IngestionJob.Phase.FAILED);
+        job.setFinishedAt(System.currentTimeMillis());
+
+        try {
+            save(job);
+        } catch (IOException e) {
+            logger.error("Could not save job " + job.getId(), e);
+        }
+    }
+
+    /**
+     * Forgets the oldest finished jobs over the number of kept ones
+     *
+     * @throws IOException io exception
+     */
+    private void forgetFinishedJobs() throws IOException {
+        List<IngestionJob> finishedJobs = new ArrayList<>();
+        for (IngestionJob job : jobs.values()) {
+            if (job.isFinished()) {
+                finishedJobs.add(job);
+            }
+        }
+
+        if (finishedJobs.size() <= maxFinished) {
+            return;
+        }
+
+        finishedJobs.sort(Comparator.comparingLong(IngestionJob::getFinishedAt));
+        for (IngestionJob job : finishedJobs.subList(0, finishedJobs.size() - maxFinished)) {
+            jobs.remove(job.getId());
+            Files.deleteIfExists(getFile(job).toPath());
+        }
+    }
+
+    /**
+     * Saves a job, replacing its file at once so a crash never leaves it half written
+     *
+     * @param job the job
+     * @throws IOException io exception
+     */
+    private void save(IngestionJob job) throws IOException {
+        File file = getFile(job);
+        File temporaryFile = new File(jobsDirectory, job.getId() + ".tmp");
+
+        objectMapper.writeValue(temporaryFile, job);
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private File getFile(IngestionJob job) {
+        return new File(jobsDirectory, job.getId() + FILE_EXTENSION);
+    }
+}
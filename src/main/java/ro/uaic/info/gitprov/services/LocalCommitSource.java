@@ -0,0 +1,445 @@
+package ro.uaic.info.gitprov.services;
+
+import org.eclipse.egit.github.core.*;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import ro.uaic.info.gitprov.models.HistoryScope;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Reads the history of a repository from a local clone or mirror, straight from its object database. Commits are
+ * described the way the Github API describes them: the files of a commit are compared with its first parent and the
+ * contributors are the authors of the commits, identified by their name.
+ */
+public class LocalCommitSource implements CommitSource {
+
+    /**
+     * The type given to the contributors, as the Github API does for user accounts.
+     */
+    private static final String CONTRIBUTOR_TYPE = "User";
+
+    /**
+     * The local repository.
+     */
+    private final org.eclipse.jgit.lib.Repository repository;
+
+    /**
+     * The users that authored commits, by name, filled on the first request of the contributors.
+     */
+    private Map<String, User> users;
+
+    /**
+     * The number of commits authored by each user.
+     */
+    private Map<String, Integer> contributions;
+
+    /**
+     * Opens the repository stored in a directory, either a bare repository or the working tree of a clone.
+     *
+     * @param directory the directory of the repository
+     * @throws IOException io exception
+     */
+    public LocalCommitSource(File directory) throws IOException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().setMustExist(true);
+
+        if (RepositoryCache.FileKey.isGitRepository(directory, FS.DETECTED)) {
+            builder.setGitDir(directory);
+        } else {
+            builder.findGitDir(directory);
+        }
+
+        if (builder.getGitDir() == null) {
+            throw new IOException("No git repository found in " + directory);
+        }
+        this.repository = builder.build();
+    }
+
+    @Override
+    public List<Contributor> getContributors() throws IOException {
+        loadAuthors();
+
+        List<Contributor> result = new ArrayList<>();
+        contributions.forEach((login, count) -> result.add(new Contributor()
+                .setLogin(login)
+                .setType(CONTRIBUTOR_TYPE)
+                .setContributions(count)));
+
+        result.sort(Comparator.comparingInt(Contributor::getContributions).reversed().thenComparing(Contributor::getLogin));
+        return result;
+    }
+
+    @Override
+    public User getUser(String login) throws IOException {
+        loadAuthors();
+
+        User user = users.get(login);
+        if (user == null) {
+            throw new IOException("Unknown author " + login);
+        }
+        return user;
+    }
+
+    @Override
+    public String getHeadSha() throws IOException {
+        ObjectId head = repository.resolve(Constants.HEAD);
+        return head == null ? null : head.getName();
+    }
+
+    @Override
+    public CommitHistory getCommitsSince(String lastCommitSha) throws IOException {
+        HistoryScope scope = new HistoryScope();
+        scope.setBase(lastCommitSha);
+        return getCommits(scope);
+    }
+
+    /**
+     * Lists the ids of the commits, the commits themselves being parsed as they are read. The walk stops at the first
+     * commit older than the time window, as the commits are walked from the newest, and skips the commits leaving the
+     * files under the path unchanged, as git log does for a path.
+     *
+     * @param scope the scope
+     * @return the history, or null if the base or the head of the scope is not part of the history
+     * @throws IOException io exception
+     */
+    @Override
+    public CommitHistory getCommits(HistoryScope scope) throws IOException {
+        List<ObjectId> result = new ArrayList<>();
+        ObjectId head = resolve(scope.getHead() == null ? Constants.HEAD : scope.getHead());
+
+        if (head == null) {
+            return scope.getBase() == null && scope.getHead() == null ? toHistory(result) : null;
+        }
+
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.setRetainBody(false);
+            RevCommit headCommit;
+            try {
+                headCommit = revWalk.parseCommit(head);
+            } catch (MissingObjectException | IncorrectObjectTypeException e) {
+                return null;
+            }
+
+            if (scope.getBase() != null) {
+                ObjectId base = resolve(scope.getBase());
+                RevCommit baseCommit;
+                try {
+                    baseCommit = base == null ? null : revWalk.parseCommit(base);
+                } catch (MissingObjectException | IncorrectObjectTypeException e) {
+                    baseCommit = null;
+                }
+
+                if (baseCommit == null) {
+                    return null;
+                }
+
+                if (!revWalk.isMergedInto(baseCommit, headCommit)) {
+                    return null;
+                }
+                revWalk.reset();
+                revWalk.markUninteresting(baseCommit);
+            }
+
+            RevFilter timeFilter = getTimeFilter(scope.getSince(), scope.getUntil());
+            if (timeFilter != null) {
+                revWalk.setRevFilter(timeFilter);
+            }
+            if (scope.getPath() != null) {
+                revWalk.setTreeFilter(AndTreeFilter.create(PathFilter.create(scope.getPath()), TreeFilter.ANY_DIFF));
+            }
+
+            revWalk.sort(RevSort.TOPO);
+            revWalk.sort(RevSort.REVERSE, true);
+            revWalk.markStart(headCommit);
+
+            for (RevCommit revCommit : revWalk) {
+                result.add(revCommit.copy());
+            }
+        }
+
+        return toHistory(result);
+    }
+
+    /**
+     * Walks the history from a commit, keeping only the commits changing the file
+     *
+     * @param filename the name of the file
+     * @param sha      the sha of the commit the search starts from
+     * @return the sha of the commit, or null if the file was never changed
+     * @throws IOException io exception
+     */
+    @Override
+    public String getLastChange(String filename, String sha) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.setRetainBody(false);
+            revWalk.setTreeFilter(AndTreeFilter.create(PathFilter.create(filename), TreeFilter.ANY_DIFF));
+            revWalk.markStart(revWalk.parseCommit(ObjectId.fromString(sha)));
+
+            RevCommit revCommit = revWalk.next();
+            return revCommit == null ? null : revCommit.getName();
+        }
+    }
+
+    @Override
+    public CommitFilesReader readFiles(CommitHistory history) {
+        final ObjectReader objectReader = repository.newObjectReader();
+        final RevWalk revWalk = new RevWalk(objectReader);
+        final DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+
+        diffFormatter.setRepository(repository);
+        diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
+        diffFormatter.setDetectRenames(true);
+
+        return new CommitFilesReader() {
+            @Override
+            public boolean hasNext() throws IOException {
+                return history.hasNext();
+            }
+
+            @Override
+            public RepositoryCommit next() throws IOException {
+                RepositoryCommit repositoryCommit = history.next();
+                RevCommit revCommit = revWalk.parseCommit(ObjectId.fromString(repositoryCommit.getSha()));
+                return repositoryCommit.setFiles(getFiles(revCommit, objectReader, revWalk, diffFormatter));
+            }
+
+            @Override
+            public void close() {
+                diffFormatter.close();
+                revWalk.close();
+                objectReader.close();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        repository.close();
+    }
+
+    /**
+     * Resolves a sha or the name of a reference
+     *
+     * @param revision the sha or the name
+     * @return the id, or null if the revision cannot be resolved
+     * @throws IOException io exception
+     */
+    private ObjectId resolve(String revision) throws IOException {
+        try {
+            return repository.resolve(revision);
+        } catch (RevisionSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the filter of the commits made within a time window, by commit date as the Github API does
+     *
+     * @param since the date of the oldest commits, or null
+     * @param until the date of the newest commits, or null
+     * @return the filter, or null if the window is not bounded
+     */
+    private static RevFilter getTimeFilter(Date since, Date until) {
+        if (since != null && until != null) {
+            return CommitTimeRevFilter.between(since, until);
+        }
+        if (since != null) {
+            return CommitTimeRevFilter.after(since);
+        }
+        return until == null ? null : CommitTimeRevFilter.before(until);
+    }
+
+    /**
+     * Gets the history of a list of commits, parsed as they are read
+     *
+     * @param commitIds the ids of the commits, from the oldest
+     * @return the history
+     */
+    private CommitHistory toHistory(final List<ObjectId> commitIds) {
+        final Iterator<ObjectId> iterator = commitIds.iterator();
+
+        return new CommitHistory() {
+            @Override
+            public int size() {
+                return commitIds.size();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public RepositoryCommit next() throws IOException {
+                return toRepositoryCommit(repository.parseCommit(iterator.next()));
+            }
+        };
+    }
+
+    /**
+     * Collects the authors of all the commits reachable from the head of the repository
+     */
+    private void loadAuthors() throws IOException {
+        if (users != null) {
+            return;
+        }
+
+        Map<String, User> loadedUsers = new HashMap<>();
+        Map<String, Integer> loadedContributions = new HashMap<>();
+        ObjectId head = repository.resolve(Constants.HEAD);
+
+        if (head != null) {
+            try (RevWalk revWalk = new RevWalk(repository)) {
+                revWalk.markStart(revWalk.parseCommit(head));
+
+                for (RevCommit revCommit : revWalk) {
+                    PersonIdent author = revCommit.getAuthorIdent();
+                    loadedUsers.putIfAbsent(author.getName(), new User()
+                            .setLogin(author.getName())
+                            .setName(author.getName())
+                            .setEmail(author.getEmailAddress())
+                            .setType(CONTRIBUTOR_TYPE));
+                    loadedContributions.merge(author.getName(), 1, Integer::sum);
+                }
+            }
+        }
+
+        users = loadedUsers;
+        contributions = loadedContributions;
+    }
+
+    /**
+     * Describes a local commit the way the Github API does
+     *
+     * @param revCommit the local commit
+     * @return the repository commit
+     */
+    private RepositoryCommit toRepositoryCommit(RevCommit revCommit) {
+        PersonIdent author = revCommit.getAuthorIdent();
+        PersonIdent committer = revCommit.getCommitterIdent();
+
+        List<Commit> parents = new ArrayList<>();
+        for (RevCommit parent : revCommit.getParents()) {
+            parents.add(new Commit().setSha(parent.getName()));
+        }
+
+        Commit commit = new Commit()
+                .setSha(revCommit.getName())
+                .setMessage(revCommit.getFullMessage())
+                .setAuthor(toCommitUser(author))
+                .setCommitter(toCommitUser(committer));
+
+        return new RepositoryCommit()
+                .setSha(revCommit.getName())
+                .setCommit(commit)
+                .setAuthor(new User().setLogin(author.getName()).setName(author.getName()).setEmail(author.getEmailAddress()))
+                .setParents(parents);
+    }
+
+    private CommitUser toCommitUser(PersonIdent personIdent) {
+        return new CommitUser()
+                .setName(personIdent.getName())
+                .setEmail(personIdent.getEmailAddress())
+                .setDate(personIdent.getWhen());
+    }
+
+    /**
+     * Compares a commit with its first parent, or with the empty tree for a root commit
+     *
+     * @param revCommit     the commit
+     * @param objectReader  the reader of the object database
+     * @param revWalk       the walk used to parse the parent
+     * @param diffFormatter the formatter used to compute the changes
+     * @return the changed files
+     * @throws IOException io exception
+     */
+    private List<CommitFile> getFiles(RevCommit revCommit, ObjectReader objectReader, RevWalk revWalk, DiffFormatter diffFormatter) throws IOException {
+        AbstractTreeIterator oldTree;
+        if (revCommit.getParentCount() > 0) {
+            RevCommit parent = revWalk.parseCommit(revCommit.getParent(0));
+            oldTree = new CanonicalTreeParser(null, objectReader, parent.getTree());
+        } else {
+            oldTree = new EmptyTreeIterator();
+        }
+        AbstractTreeIterator newTree = new CanonicalTreeParser(null, objectReader, revCommit.getTree());
+
+        List<CommitFile> result = new ArrayList<>();
+        for (DiffEntry diffEntry : diffFormatter.scan(oldTree, newTree)) {
+            result.add(toCommitFile(diffEntry, diffFormatter));
+        }
+
+        return result;
+    }
+
+    /**
+     * Describes a changed file the way the Github API does
+     *
+     * @param diffEntry     the change
+     * @param diffFormatter the formatter used to count the changed lines
+     * @return the commit file
+     */
+    private CommitFile toCommitFile(DiffEntry diffEntry, DiffFormatter diffFormatter) throws IOException {
+        String filename;
+        String status;
+
+        switch (diffEntry.getChangeType()) {
+            case ADD:
+            case COPY:
+                filename = diffEntry.getNewPath();
+                status = "added";
+                break;
+            case DELETE:
+                filename = diffEntry.getOldPath();
+                status = "removed";
+                break;
+            case RENAME:
+                filename = diffEntry.getNewPath();
+                status = "renamed";
+                break;
+            default:
+                filename = diffEntry.getNewPath();
+                status = "modified";
+        }
+
+        int additions = 0;
+        int deletions = 0;
+        for (Edit edit : diffFormatter.toFileHeader(diffEntry).toEditList()) {
+            additions += edit.getLengthB();
+            deletions += edit.getLengthA();
+        }
+
+        return new CommitFile()
+                .setFilename(filename)
+                .setStatus(status)
+                .setSha(diffEntry.getNewId().name())
+                .setAdditions(additions)
+                .setDeletions(deletions)
+                .setChanges(additions + deletions);
+    }
+}
@@ -0,0 +1,557 @@
+package ro.uaic.info.gitprov.services;
+
+import org.eclipse.egit.github.core.*;
+import org.openprovenance.prov.model.*;
+import ro.uaic.info.gitprov.models.GenerationState;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * The context of a single provenance generation: the namespace of the document and the provenance records built from
+ * the history of a repository. A builder is used by one generation only, so concurrent generations share no state.
+ */
+public class ProvenanceBuilder {
+
+    /**
+     * The constant PROVENANCE_PREFIX.
+     */
+    private static final String PROVENANCE_PREFIX = "gitprov";
+    /**
+     * The constant Friend of a Friend base uri.
+     */
+    private static final String FOAF_NS = "http://xmlns.com/foaf/0.1/";
+    /**
+     * The constant Friend of a Friend prefix.
+     */
+    private static final String FOAF_PREFIX = "foaf";
+    /**
+     * The characters of a path replaced when standardizing a filename.
+     */
+    private static final Pattern FILENAME_SEPARATORS = Pattern.compile("[/\\\\. ]");
+    /**
+     * The factory object used to create all the provenance entries.
+     */
+    private final ProvFactory provFactory;
+    /**
+     * The namespace object that stores all the namespaces used in the document.
+     */
+    private final Namespace namespace;
+
+    /**
+     * The Qualified name utils used to construct correctly formatted qualified names
+     */
+    private final QualifiedNameUtils qualifiedNameUtils = new QualifiedNameUtils();
+
+    /**
+     * The escaped standardized names of the files, by filename, reused by every record of a file
+     */
+    private final Map<String, String> escapedBaseFilenames = new HashMap<>();
+
+    /**
+     * The qualified names of the entities standing for the latest version of each file, by filename
+     */
+    private final Map<String, QualifiedName> latestEntityIds = new HashMap<>();
+
+    /**
+     * The names of the attributes added to the records of every commit, built once as every qualified name is costly
+     */
+    private final QualifiedName homepageAttributeName;
+    private final QualifiedName additionsAttributeName;
+    private final QualifiedName changesAttributeName;
+    private final QualifiedName deletionsAttributeName;
+
+    /**
+     * The factory of the record times, obtained on the first use
+     */
+    private DatatypeFactory datatypeFactory;
+
+    /**
+     * Lists containing the provenance entries objects not yet handed out in a document
+     */
+    private final List<Agent> agents = new ArrayList<>();
+    private final List<Activity> activities = new ArrayList<>();
+    private final List<Entity> entities = new ArrayList<>();
+    private final List<Entity> baseEntities = new ArrayList<>();
+    private final List<WasAssociatedWith> wasAssociatedWiths = new ArrayList<>();
+    private final List<SpecializationOf> specializationOfs = new ArrayList<>();
+    private final List<WasGeneratedBy> wasGeneratedBies = new ArrayList<>();
+    private final List<WasInvalidatedBy> wasInvalidatedBies = new ArrayList<>();
+    private final List<Used> used = new ArrayList<>();
+    private final List<WasInformedBy> wasInformedBies = new ArrayList<>();
+    private final List<WasDerivedFrom> wasDerivedFroms = new ArrayList<>();
+    /**
+     * The agents and base entities generated so far, indexed for the lookups made when processing the commits
+     */
+    private final ProvenanceRegistry registry = new ProvenanceRegistry();
+    /**
+     * The state of the generation, holding the last version of every file known so far
+     */
+    private final GenerationState generationState;
+
+    private final String githubRepoUrl;
+    private final String githubUserUrl;
+    private final String provenanceNs;
+
+    /**
+     * Instantiates a new Provenance builder registering the used namespaces, continuing from the file versions of a
+     * previous generation
+     *
+     * @param provFactory  the factory used to create the provenance entries
+     * @param owner        the owner of the repository
+     * @param repo         the name of the repository
+     * @param provenanceNs the provenance namespace, the uri of the resource
+     * @param state        the state of the previous generation, updated with the processed commits
+     */
+    public ProvenanceBuilder(ProvFactory provFactory, String owner, String repo, String provenanceNs, GenerationState state) {
+        this.provFactory = provFactory;
+        this.provenanceNs = provenanceNs;
+        this.generationState = state;
+
+        namespace = new Namespace();
+        namespace.addKnownNamespaces();
+        namespace.register(FOAF_PREFIX, FOAF_NS);
+        namespace.register(PROVENANCE_PREFIX, provenanceNs);
+
+        homepageAttributeName = provFactory.newQualifiedName(FOAF_NS, "homepage", FOAF_PREFIX);
+        additionsAttributeName = provFactory.newQualifiedName(provenanceNs, "additions", PROVENANCE_PREFIX);
+        changesAttributeName = provFactory.newQualifiedName(provenanceNs, "changes", PROVENANCE_PREFIX);
+        deletionsAttributeName = provFactory.newQualifiedName(provenanceNs, "deletions", PROVENANCE_PREFIX);
+
+        githubUserUrl = "https://github.com/" + owner;
+        githubRepoUrl = githubUserUrl + "/" + repo;
+    }
+
+    /**
+     * Generates an agent provenance record object for every contributor of the repository
+     *
+     * @param commitSource the source of the contributors
+     * @throws IOException io exception
+     */
+    public void processAllAgents(CommitSource commitSource) throws IOException {
+        String type, authorLogin, authorUrl;
+        Agent agent;
+
+        List<Contributor> contributors = commitSource.getContributors();
+        List<String> logins = new ArrayList<>();
+        for (Contributor contributor : contributors) {
+            logins.add(contributor.getLogin());
+        }
+        Map<String, User> users = commitSource.getUsers(logins);
+
+        for (Contributor contributor : contributors) {
+            type = contributor.getType();
+            authorLogin = contributor.getLogin();
+            authorUrl = githubUserUrl;
+            User user = users.get(authorLogin);
+
+            List<Attribute> attributes = new ArrayList<>();
+            attributes.add(provFactory.newAttribute(Attribute.AttributeKind.PROV_TYPE, type, provFactory.getName().XSD_STRING));
+            attributes.add(provFactory.newAttribute(homepageAttributeName, authorUrl, provFactory.getName().XSD_ANY_URI));
+            attributes.add(provFactory.newAttribute(Attribute.AttributeKind.PROV_LABEL, authorLogin, provFactory.getName().XSD_STRING));
+            attributes.add(provFactory.newAttribute(provenanceNs, "contributions", PROVENANCE_PREFIX, contributor.getContributions(), provFactory.getName().XSD_INT));
+
+            String email = user.getEmail();
+            if (email != null) {
+                attributes.add(provFactory.newAttribute(FOAF_NS, "mbox", FOAF_PREFIX, email, provFactory.getName().XSD_STRING));
+            }
+
+            String avatarUrl = user.getAvatarUrl();
+            if (avatarUrl != null) {
+                attributes.add(provFactory.newAttribute(FOAF_NS, "img", FOAF_PREFIX, avatarUrl, provFactory.getName().XSD_ANY_URI));
+            }
+
+            String name = user.getName();
+            if (name != null) {
+                attributes.add(provFactory.newAttribute(FOAF_NS, "name", FOAF_PREFIX, name, provFactory.getName().XSD_STRING));
+            }
+
+            agent = provFactory.newAgent(getAgentQualifiedName(authorLogin), attributes);
+            this.agents.add(agent);
+            registry.registerAgent(authorLogin, name, email);
+        }
+    }
+
+    /**
+     * Generates the provenance records of a commit
+     *
+     * @param repositoryCommit the commit
+     * @param commitFiles      the files changed by the commit
+     */
+    public void processCommit(RepositoryCommit repositoryCommit, List<CommitFile> commitFiles) {
+        final String sha = repositoryCommit.getSha();
+
+        Commit commit = repositoryCommit.getCommit();
+
+        final String commitMessage = commit.getMessage();
+
+        final CommitUser commitAuthor = commit.getAuthor();
+        final Date authorDate = commitAuthor.getDate();
+        final User author = repositoryCommit.getAuthor();
+        String authorName;
+
+        if (author == null) {
+            authorName = registry.findAgentLabel(commitAuthor.getName(), commitAuthor.getEmail());
+            if (authorName == null) {
+                authorName = commitAuthor.getName();
+            }
+        } else {
+            authorName = author.getLogin();
+        }
+
+        Activity activity = processActivity(sha, authorDate, commitMessage);
+        processWasAssociatedWith(sha, authorName, activity.getId());
+
+        // TODO process startedBy
+        // TODO process endedBy
+
+        commitFiles.forEach((CommitFile commitFile) -> {
+            final String filename = commitFile.getFilename();
+            Entity newEntity = provFactory.newEntity(getFileQualifiedName("", filename, "_commit-" + sha), filename);
+            processSpecializationOf(filename, newEntity, sha);
+
+            String status = commitFile.getStatus();
+            switch (status) {
+                case "added":
+                    processWasGeneratedBy(sha, filename, authorDate, newEntity, activity);
+                    break;
+                case "removed":
+                    processInvalidatedBy(sha, filename, authorDate, newEntity, activity);
+                    break;
+                case "modified":
+                    processWasGeneratedBy(sha, filename, authorDate, newEntity, activity);
+                    processUsed(sha, filename, authorDate, activity);
+                    processWasDerivedFrom(sha, filename, newEntity.getId(), activity.getId(), commitFile.getAdditions(), commitFile.getChanges(), commitFile.getDeletions());
+                    break;
+            }
+            entities.add(newEntity);
+            registerNewVersion(filename, sha);
+            latestEntityIds.put(filename, newEntity.getId());
+        });
+        activities.add(activity);
+        processWasInformedBy(sha, activity, repositoryCommit.getParents());
+    }
+
+    /**
+     * Whether the version of a file is known, either produced by a processed commit or by a previous generation
+     *
+     * @param filename the name of the file
+     * @return whether the version is known
+     */
+    public boolean hasVersion(String filename) {
+        return generationState.getFileVersions().contains(filename);
+    }
+
+    /**
+     * Registers the version of a file produced by a commit left out of the generation, so the records of the commits
+     * changing the file refer to it. The entity standing for the version is generated as well, so the document
+     * describes every entity it refers to.
+     *
+     * @param filename the name of the file
+     * @param sha      the sha of the commit that produced the version
+     */
+    public void seedVersion(String filename, String sha) {
+        Entity entity = provFactory.newEntity(getFileQualifiedName("", filename, "_commit-" + sha), filename);
+        processSpecializationOf(filename, entity, sha);
+        entities.add(entity);
+        generationState.getFileVersions().put(filename, sha);
+        latestEntityIds.put(filename, entity.getId());
+    }
+
+    /**
+     * Constructs a provenance document from the provenance records objects generated since the previous call and
+     * forgets them, so a generation can be written in several parts
+     *
+     * @return the document
+     */
+    public Document drainDocument() {
+        Document document = provFactory.newDocument();
+        document.setNamespace(namespace);
+
+        List<List<? extends StatementOrBundle>> recordLists = Arrays.asList(activities, agents, wasAssociatedWiths,
+                entities, baseEntities, specializationOfs, wasGeneratedBies, wasInvalidatedBies, used,
+                wasInformedBies, wasDerivedFroms);
+
+        for (List<? extends StatementOrBundle> records : recordLists) {
+            document.getStatementOrBundle().addAll(records);
+            records.clear();
+        }
+
+        return document;
+    }
+
+    /**
+     * Gets qualified name.
+     *
+     * @param name   the name
+     * @param prefix the prefix
+     * @return the qualified name
+     */
+    public QualifiedName getQualifiedName(String name, String prefix) {
+        return namespace.qualifiedName(prefix, qualifiedNameUtils.escapeToXsdLocalName(name), provFactory);
+    }
+
+    /**
+     * Stores a version of a file produced by a processed commit in the generation state
+     *
+     * @param filename the name of the file
+     * @param sha      the sha of the commit
+     */
+    private void registerNewVersion(String filename, String sha) {
+        generationState.putFileVersion(filename, sha);
+    }
+
+
+    private Activity processActivity(String sha, Date date, String commitMessage) {
+        String commitUrl = githubRepoUrl + "/commit/" + sha;
+        Activity result;
+
+        List<Attribute> attributes = new ArrayList<>();
+        attributes.add(provFactory.newAttribute(homepageAttributeName, commitUrl, provFactory.getName().XSD_ANY_URI));
+        attributes.add(provFactory.newAttribute(Attribute.AttributeKind.PROV_LABEL, commitMessage, provFactory.getName().XSD_STRING));
+
+        try {
+            XMLGregorianCalendar time = getXmlGregorianCalendar(date);
+            result = provFactory.newActivity(getQualifiedName("commit-" + sha, PROVENANCE_PREFIX), time, null, attributes);
+
+        } catch (DatatypeConfigurationException e) {
+            result = provFactory.newActivity(getQualifiedName("commit-" + sha, PROVENANCE_PREFIX), commitMessage);
+        }
+
+        return result;
+    }
+
+    private String getAuthorLoginLabel(String authorLogin) {
+        return authorLogin.replace(' ', '-');
+    }
+
+    /**
+     * Gets the qualified name of an agent, interned as it is referenced by every commit of the author
+     *
+     * @param authorLogin the login of the author
+     * @return the qualified name
+     */
+    private QualifiedName getAgentQualifiedName(String authorLogin) {
+        String label = getAuthorLoginLabel(authorLogin);
+        return registry.internQualifiedName(PROVENANCE_PREFIX, label, () -> getQualifiedName(label, PROVENANCE_PREFIX));
+    }
+
+    /**
+     * Given a filename and a corresponding entity, registers it into the baseEntities if it is the case (if it does not
+     * already exists in there) and into the specializationOfs
+     *
+     * @param filename  the name of the file
+     * @param newEntity the previously generated entity corresponding with the filename
+     */
+    private void processSpecializationOf(String filename, Entity newEntity, String sha) {
+        SpecializationOf specializationOf;
+        String label = newEntity.getLabel().get(0).getValue();
+        Entity baseEntity;
+
+        baseEntity = registry.getBaseEntity(label);
+        if (baseEntity == null) {
+            baseEntity = provFactory.newEntity(getFileQualifiedName("", filename, ""), filename);
+            baseEntities.add(baseEntity);
+            registry.registerBaseEntity(label, baseEntity);
+        }
+
+        specializationOf = provFactory.newSpecializationOf(newEntity.getId(), baseEntity.getId());
+        // specializationOf = provFactory.newQualifiedSpecializationOf(getQualifiedName("specialization-"+baseEntity.getLabel().get(0).getValue()+"-"+sha, PROVENANCE_PREFIX), newEntity.getId(), baseEntity.getId(), null);
+        specializationOfs.add(specializationOf);
+    }
+
+    /**
+     * Registers a WasGeneratedBy provenance record object
+     *
+     * @param sha       the sha of the commit
+     * @param filename  the name of the file that was generated
+     * @param date      the date of the commit
+     * @param newEntity the previously generated entity
+     * @param activity  the corresponding activity that generated the entity
+     */
+    private void processWasGeneratedBy(String sha, String filename, Date date, Entity newEntity, Activity activity) {
+
+        WasGeneratedBy wasGeneratedBy;
+        try {
+            XMLGregorianCalendar time = getXmlGregorianCalendar(date);
+            wasGeneratedBy = provFactory.newWasGeneratedBy(getFileQualifiedName("generation-", filename, "-" + sha), newEntity.getId(), activity.getId(), time, null);
+        } catch (DatatypeConfigurationException e) {
+            wasGeneratedBy = provFactory.newWasGeneratedBy(getFileQualifiedName("generation-", filename, "-" + sha), newEntity.getId(), activity.getId());
+        }
+
+        wasGeneratedBies.add(wasGeneratedBy);
+    }
+
+    /**
+     * Registers an invalidatedBy provenance record object
+     *
+     * @param sha       the sha of the commit
+     * @param filename
+     * @param date      the date of the commit
+     * @param newEntity the previously generated entity
+     * @param activity  the corresponding activity that generated the entity
+     */
+    private void processInvalidatedBy(String sha, String filename, Date date, Entity newEntity, Activity activity) {
+        WasInvalidatedBy wasInvalidatedBy;
+        try {
+            XMLGregorianCalendar time = getXmlGregorianCalendar(date);
+            wasInvalidatedBy = provFactory.newWasInvalidatedBy(getFileQualifiedName("invalidation-", filename, "-" + sha), newEntity.getId(), activity.getId(), time, null);
+        } catch (DatatypeConfigurationException e) {
+            wasInvalidatedBy = provFactory.newWasInvalidatedBy(getFileQualifiedName("invalidation-", filename, "-" + sha), newEntity.getId(), activity.getId());
+        }
+
+        wasInvalidatedBies.add(wasInvalidatedBy);
+    }
+
+    /**
+     * Registers an used provenance record object
+     *
+     * @param sha      the sha of the commit
+     * @param filename the name of the file
+     * @param activity the corresponding activity that generated the entity
+     * @param date     the date of the commit
+     */
+    private void processUsed(String sha, String filename, Date date, Activity activity) {
+        Used u;
+        String parentCommitSha = getParentCommitSha(filename);
+        try {
+            QualifiedName parentEntityQualifiedName;
+            XMLGregorianCalendar time = getXmlGregorianCalendar(date);
+            parentEntityQualifiedName = getParentEntityQualifiedName(filename, parentCommitSha);
+            u = provFactory.newUsed(getFileQualifiedName("usage-", filename, "-" + sha + "-" + parentCommitSha), activity.getId(), parentEntityQualifiedName, time, null);
+        } catch (Exception e) {
+            QualifiedName parentEntityQualifiedName;
+            parentEntityQualifiedName = getParentEntityQualifiedName(filename, parentCommitSha);
+            u = provFactory.newUsed(getFileQualifiedName("usage-", filename, "-" + sha + "-" + parentCommitSha), activity.getId(), parentEntityQualifiedName);
+        }
+
+        used.add(u);
+    }
+
+    /**
+     * Registers an wasAssociated provenance record object
+     *
+     * @param sha        the sha of the commit
+     * @param authorName the author's name
+     * @param activityId the qualified name of the activity that generated the entity
+     */
+    private void processWasAssociatedWith(String sha, String authorName, QualifiedName activityId) {
+        final QualifiedName agentQualifiedName = getAgentQualifiedName(authorName);
+        List<Attribute> attributes = new ArrayList<>();
+        WasAssociatedWith wasAssociatedWithResult;
+        attributes.add(provFactory.newAttribute(Attribute.AttributeKind.PROV_ROLE, "authorship", provFactory.getName().XSD_STRING));
+
+        wasAssociatedWithResult = provFactory.newWasAssociatedWith(getQualifiedName("association-" + sha, PROVENANCE_PREFIX), activityId, agentQualifiedName, null, attributes);
+        wasAssociatedWiths.add(wasAssociatedWithResult);
+    }
+
+    /**
+     * Registers an wasDerivedFrom provenance record object
+     *  @param sha      the sha of the commit
+     * @param filename the name of the file
+     * @param generatedEntity the qualified name of the entity generated by the commit
+     * @param activity the qualified name of the activity of the commit
+     * @param additions
+     * @param changes
+     * @param deletions
+     */
+    private void processWasDerivedFrom(String sha, String filename, QualifiedName generatedEntity, QualifiedName activity, int additions, int changes, int deletions) {
+        String parentCommitSha = getParentCommitSha(filename);
+        List<Attribute> attributes = new ArrayList<>();
+        QualifiedName usedEntity = getParentEntityQualifiedName(filename, parentCommitSha);
+        QualifiedName used = getQualifiedName("usage-" + sha + "-" + parentCommitSha, PROVENANCE_PREFIX);
+        QualifiedName wasDerivedFromId = getFileQualifiedName("derivation-", filename, "_commit-" + sha + "-" + parentCommitSha);
+        QualifiedName generation = getQualifiedName("generation-" + sha, PROVENANCE_PREFIX);
+
+        attributes.add(provFactory.newAttribute(additionsAttributeName, additions, provFactory.getName().XSD_INT));
+        attributes.add(provFactory.newAttribute(changesAttributeName, changes, provFactory.getName().XSD_INT));
+        attributes.add(provFactory.newAttribute(deletionsAttributeName, deletions, provFactory.getName().XSD_INT));
+
+        wasDerivedFroms.add(provFactory.newWasDerivedFrom(wasDerivedFromId, generatedEntity, usedEntity, activity, generation, used, attributes));
+    }
+
+    /**
+     * Generates an wasInformedBy provenance record object
+     *
+     * @param sha      the sha of the resource
+     * @param activity the activity that generated the entity
+     * @param parents  the parent commits of the current commit
+     */
+    private void processWasInformedBy(String sha, Activity activity, List<Commit> parents) {
+        String parentSha;
+        for (Commit commit : parents) {
+            parentSha = commit.getSha();
+            wasInformedBies.add(provFactory.newWasInformedBy(getQualifiedName("information-" + parentSha + "-" + sha, PROVENANCE_PREFIX), activity.getId(), getQualifiedName("commit-" + parentSha, PROVENANCE_PREFIX)));
+        }
+    }
+
+    /**
+     * Generates the qualified name of a record of a file. The standardized filename is escaped once per file, and
+     * only the parts around it are escaped for every record, which gives the same name as escaping the whole
+     * identifier since all of them start with a letter.
+     *
+     * @param before   the part of the identifier before the standardized filename
+     * @param filename the name of the file
+     * @param after    the part of the identifier after the standardized filename
+     * @return the qualified name
+     */
+    private QualifiedName getFileQualifiedName(String before, String filename, String after) {
+        String escapedBaseFilename = escapedBaseFilenames.computeIfAbsent(filename, key ->
+                QualifiedNameUtils.ESCAPE_TO_XML_QNAME_LOCAL_NAME.translate(getStandardizedBaseFilename(key)));
+        String localName = QualifiedNameUtils.ESCAPE_TO_XML_QNAME_LOCAL_NAME.translate(before) + escapedBaseFilename
+                + QualifiedNameUtils.ESCAPE_TO_XML_QNAME_LOCAL_NAME.translate(after);
+
+        return namespace.qualifiedName(PROVENANCE_PREFIX, localName, provFactory);
+    }
+
+    /**
+     * Provides the qualified name of the entity standing for the latest version of a file, reusing the one generated
+     * by this builder when there is one
+     *
+     * @param filename        the name of the file
+     * @param parentCommitSha the sha of the commit that produced the latest version
+     * @return the qualified name
+     */
+    private QualifiedName getParentEntityQualifiedName(String filename, String parentCommitSha) {
+        return latestEntityIds.computeIfAbsent(filename, key -> getFileQualifiedName("", key, "_commit-" + parentCommitSha));
+    }
+
+    /**
+     * Generates an identifier for a generic file
+     *
+     * @param filename the name of the file
+     * @return the identifier
+     */
+    private String getStandardizedBaseFilename(String filename) {
+        return "file-" + FILENAME_SEPARATORS.matcher(filename).replaceAll("-");
+    }
+
+    /**
+     * Provides the sha of the last commit that modified the resource with the filename
+     *
+     * @param filename the name of the file
+     * @return the parent commit sha
+     */
+    private String getParentCommitSha(String filename) {
+        return generationState.getFileVersions().get(filename);
+    }
+
+    /**
+     * Transforms a Date object into a XMLGregorianCalendar object
+     *
+     * @param date the Date object
+     * @return the MLGregorianCalendar object
+     */
+    private XMLGregorianCalendar getXmlGregorianCalendar(Date date) throws DatatypeConfigurationException {
+        GregorianCalendar gregorianCalendar = new GregorianCalendar();
+        gregorianCalendar.setTime(date);
+        if (datatypeFactory == null) {
+            datatypeFactory = DatatypeFactory.newInstance();
+        }
+        return datatypeFactory.newXMLGregorianCalendar(gregorianCalendar);
+    }
+}
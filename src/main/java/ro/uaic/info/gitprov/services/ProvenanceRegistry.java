@@ -0,0 +1,125 @@
+package ro.uaic.info.gitprov.services;
+
+import org.openprovenance.prov.model.Entity;
+import org.openprovenance.prov.model.QualifiedName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Indexes the provenance records of a generation that are looked up while processing the commits: the base entities
+ * by file label and the agents by name and email. It also interns the qualified names that are used over and over, so
+ * every lookup costs constant time whatever the size of the history.
+ */
+public class ProvenanceRegistry {
+
+    /**
+     * The base entities, by the label of the file they stand for.
+     */
+    private final Map<String, Entity> baseEntities = new HashMap<>();
+
+    /**
+     * The labels of the agents, in the order in which they were registered.
+     */
+    private final List<String> agentLabels = new ArrayList<>();
+
+    /**
+     * The position of the first agent registered with each name.
+     */
+    private final Map<String, Integer> agentsByName = new HashMap<>();
+
+    /**
+     * The position of the first agent registered with each email.
+     */
+    private final Map<String, Integer> agentsByEmail = new HashMap<>();
+
+    /**
+     * The position of the first agent registered without a name, -1 if there is none.
+     */
+    private int firstUnnamedAgent = -1;
+
+    /**
+     * The interned qualified names, by prefix and local name.
+     */
+    private final Map<String, QualifiedName> qualifiedNames = new HashMap<>();
+
+    /**
+     * Gets the base entity of a file
+     *
+     * @param label the label of the file
+     * @return the base entity, null if it was not registered
+     */
+    public Entity getBaseEntity(String label) {
+        return baseEntities.get(label);
+    }
+
+    /**
+     * Registers the base entity of a file
+     *
+     * @param label      the label of the file
+     * @param baseEntity the base entity
+     */
+    public void registerBaseEntity(String label, Entity baseEntity) {
+        baseEntities.put(label, baseEntity);
+    }
+
+    /**
+     * Registers an agent
+     *
+     * @param label the label of the agent
+     * @param name  the name of the agent, null if it is unknown
+     * @param email the email of the agent, null if it is unknown
+     */
+    public void registerAgent(String label, String name, String email) {
+        int position = agentLabels.size();
+        agentLabels.add(label);
+
+        if (name == null) {
+            if (firstUnnamedAgent < 0) {
+                firstUnnamedAgent = position;
+            }
+        } else {
+            agentsByName.putIfAbsent(name, position);
+        }
+
+        if (email != null) {
+            agentsByEmail.putIfAbsent(email, position);
+        }
+    }
+
+    /**
+     * Finds the agent standing for the author of a commit that is not linked to a Github account. The first agent that
+     * either has the name of the author or has no name at all is chosen; when there is none, the first agent with the
+     * email of the author is.
+     *
+     * @param name  the name of the author
+     * @param email the email of the author
+     * @return the label of the agent, null if none matches
+     */
+    public String findAgentLabel(String name, String email) {
+        Integer named = agentsByName.get(name);
+        int position = named == null ? firstUnnamedAgent : firstUnnamedAgent < 0 ? named : Math.min(named, firstUnnamedAgent);
+
+        if (position < 0 && email != null) {
+            Integer byEmail = agentsByEmail.get(email);
+            position = byEmail == null ? -1 : byEmail;
+        }
+
+        return position < 0 ? null : agentLabels.get(position);
+    }
+
+    /**
+     * Gets an interned qualified name, creating it on the first request
+     *
+     * @param prefix    the prefix of the name
+     * @param localName the local name, not escaped
+     * @param factory   creates the qualified name on the first request
+     * @return the qualified name
+     */
+    public QualifiedName internQualifiedName(String prefix, String localName, Supplier<QualifiedName> factory) {
+        return qualifiedNames.computeIfAbsent(prefix + ':' + localName, key -> factory.get());
+    }
+}
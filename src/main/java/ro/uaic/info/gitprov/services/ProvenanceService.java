@@ -1,23 +1,26 @@
 package ro.uaic.info.gitprov.services;
 
 import org.apache.log4j.Logger;
-import org.eclipse.egit.github.core.*;
-import org.eclipse.egit.github.core.service.CommitService;
-import org.eclipse.egit.github.core.service.RepositoryService;
-import org.eclipse.egit.github.core.service.UserService;
+import org.eclipse.egit.github.core.CommitFile;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryCommit;
 import org.openprovenance.prov.interop.InteropFramework;
-import org.openprovenance.prov.model.*;
+import org.openprovenance.prov.model.Document;
+import org.openprovenance.prov.model.ProvFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ro.uaic.info.gitprov.models.GenerationState;
+import ro.uaic.info.gitprov.models.HistoryScope;
+import ro.uaic.info.gitprov.utils.ProvnStreamWriter;
+import ro.uaic.info.gitprov.utils.RdfStreamWriter;
 
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeFactory;
-import javax.xml.datatype.XMLGregorianCalendar;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The Provenance service.
@@ -31,186 +34,301 @@ public class ProvenanceService {
     final static Logger logger = Logger.getLogger(ProvenanceService.class);
 
     /**
-     * The constant PROVENANCE_PREFIX.
+     * The number of commits whose records are handed out together while a document is streamed.
      */
-    private static final String PROVENANCE_PREFIX = "gitprov";
-    /**
-     * The constant Friend of a Friend base uri.
-     */
-    private static final String FOAF_NS = "http://xmlns.com/foaf/0.1/";
-    /**
-     * The constant Friend of a Friend prefix.
-     */
-    private static final String FOAF_PREFIX = "foaf";
+    private static final int RECORDS_BATCH_SIZE = 100;
+
     /**
      * The factory object used to create all the provenance entries.
      */
     private final ProvFactory provFactory = InteropFramework.newXMLProvFactory();
+
     /**
-     * The namespace object that stores all the namespaces used in the document.
-     */
-    private final Namespace namespace;
-    /**
-     * The Commit service used to get all the information needed about a particular commit.
+     * The listener of the generations whose progress is not followed.
      */
-    @Autowired
-    private CommitService commitService;
-
-    @Autowired
-    private UserService userService;
+    private static final ProgressListener NO_PROGRESS = new ProgressListener() {
+    };
 
     /**
-     * The Repository service that gets all the commits and repository information.
+     * The factory choosing where the history of a repository is read from.
      */
     @Autowired
-    private RepositoryService repositoryService;
+    private CommitSourceFactory commitSourceFactory;
 
     /**
-     * The Interop framework that writes the document in different formats.
+     * Generates a provenance document from a Github repository
+     *
+     * @param repository   the repository object that references the targeted repository for provenance
+     * @param provenanceNs the provenance namespace, the uri of the resource
+     * @param contentType
+     * @return the string
+     * @throws IOException io exception
      */
-    private InteropFramework interopFramework = new InteropFramework();
+    public String repositoryToDocument(Repository repository, String provenanceNs, String contentType) throws IOException {
+        return repositoryToDocument(repository, provenanceNs, contentType, new GenerationState());
+    }
 
     /**
-     * The Qualified name utils used to construct correctly formatted qualified names
+     * Generates a provenance document from a Github repository, continuing a previous generation. Only the commits
+     * pushed after the last commit of the state are processed, and the state is updated to cover them. If that commit
+     * is no longer part of the history, the state is reset and the whole history is processed.
+     *
+     * @param repository   the repository object that references the targeted repository for provenance
+     * @param provenanceNs the provenance namespace, the uri of the resource
+     * @param contentType  the content type of the document
+     * @param state        the state of the previous generation
+     * @return the document containing the records of the new commits, or null if there are no new commits
+     * @throws IOException io exception
      */
-    private QualifiedNameUtils qualifiedNameUtils = new QualifiedNameUtils();
+    public String repositoryToDocument(Repository repository, String provenanceNs, String contentType, GenerationState state) throws IOException {
+        ProvenanceBuilder builder = generate(repository, provenanceNs, state, null, records -> {
+        }, NO_PROGRESS);
+
+        return builder == null ? null : getDocument(builder.drainDocument(), contentType);
+    }
 
     /**
-     * Lists containing all the provenance entries objects used in the document
+     * Generates the provenance records of a Github repository, continuing a previous generation, and hands them out in
+     * turtle format by batches of commits, so the whole document is never held at once. The state covers the commits
+     * of a batch when it is handed out.
+     *
+     * @param repository   the repository object that references the targeted repository for provenance
+     * @param provenanceNs the provenance namespace, the uri of the resource
+     * @param state        the state of the previous generation
+     * @param handler      the handler of the batches
+     * @param progress     the listener of the progress of the generation
+     * @return whether there were new commits
+     * @throws IOException io exception
      */
-    private List<Agent> agents;
-    private List<Activity> activities;
-    private List<Entity> entities;
-    private List<Entity> baseEntities;
-    private List<WasAssociatedWith> wasAssociatedWiths;
-    private List<SpecializationOf> specializationOfs;
-    private List<WasGeneratedBy> wasGeneratedBies;
-    private List<WasInvalidatedBy> wasInvalidatedBies;
-    private List<Used> used;
-    private List<WasInformedBy> wasInformedBies;
-    private List<WasDerivedFrom> wasDerivedFroms;
-    private Map<String, List<String>> entityVersions;
-
-    private String githubRepoUrl;
-    private String githubUserUrl;
-    private String provenanceNs;
+    public boolean repositoryToBatches(Repository repository, String provenanceNs, GenerationState state, BatchHandler handler, ProgressListener progress) throws IOException {
+        ProvenanceBuilder builder = generate(repository, provenanceNs, state, null, records -> handleBatch(records.drainDocument(), handler, progress), progress);
+
+        if (builder == null) {
+            return false;
+        }
+
+        handleBatch(builder.drainDocument(), handler, progress);
+        return true;
+    }
 
     /**
-     * Instantiates a new Provenance service registering the used namespaces
+     * Generates a provenance document from a Github repository and writes it to a stream. A provenance notation, turtle
+     * or trig document is written progressively, every batch of processed commits being flushed to the stream, the
+     * other formats, which are not line oriented, are written once the whole history is processed.
+     *
+     * @param repository   the repository object that references the targeted repository for provenance
+     * @param provenanceNs the provenance namespace, the uri of the resource
+     * @param contentType  the content type of the document
+     * @param outputStream the stream the document is written to
+     * @return the sha of the newest commit covered by the document
+     * @throws IOException io exception
      */
-    public ProvenanceService() {
-        namespace = new Namespace();
-        namespace.addKnownNamespaces();
-        namespace.register(FOAF_PREFIX, FOAF_NS);
+    public String writeDocument(Repository repository, String provenanceNs, String contentType, OutputStream outputStream) throws IOException {
+        return writeDocument(repository, provenanceNs, contentType, null, outputStream);
     }
 
     /**
-     * Generates a provenance document from a Github repository
+     * Generates a provenance document from the part of the history of a Github repository within a scope and writes
+     * it to a stream. Only the commits within the scope are listed and processed, and only the files under the path of
+     * the scope are described. The files changed by these commits
+     * whose previous version was produced by a commit out of the scope refer to that version, looked up once per file,
+     * so the document holds the same records for these commits as the document of the whole history.
      *
      * @param repository   the repository object that references the targeted repository for provenance
      * @param provenanceNs the provenance namespace, the uri of the resource
-     * @param contentType
-     * @return the string
+     * @param contentType  the content type of the document
+     * @param scope        the scope, or null for the whole history
+     * @param outputStream the stream the document is written to
+     * @return the sha of the newest commit covered by the document
      * @throws IOException io exception
      */
-    public String repositoryToDocument(Repository repository, String provenanceNs, String contentType) throws IOException {
-        this.provenanceNs = provenanceNs;
-        namespace.register(PROVENANCE_PREFIX, provenanceNs);
-        this.provenanceNs = provenanceNs;
-
-        List<RepositoryCommit> repositoryCommits = commitService.getCommits(repository);
-        List<CommitFile> commitFiles;
+    public String writeDocument(Repository repository, String provenanceNs, String contentType, HistoryScope scope, OutputStream outputStream) throws IOException {
+        InteropFramework.ProvFormat provFormat = getProvFormat(contentType);
+        GenerationState state = new GenerationState();
+
+        if (provFormat == InteropFramework.ProvFormat.PROVN) {
+            ProvnStreamWriter provnStreamWriter = new ProvnStreamWriter(outputStream);
+            ProvenanceBuilder builder = generate(repository, provenanceNs, state, scope, records -> provnStreamWriter.write(records.drainDocument()), NO_PROGRESS);
+
+            provnStreamWriter.write(builder.drainDocument());
+            provnStreamWriter.end();
+        } else if (RdfStreamWriter.supports(provFormat)) {
+            RdfStreamWriter rdfStreamWriter = new RdfStreamWriter(outputStream, provFormat);
+            ProvenanceBuilder builder = generate(repository, provenanceNs, state, scope, records -> rdfStreamWriter.write(records.drainDocument()), NO_PROGRESS);
+
+            rdfStreamWriter.write(builder.drainDocument());
+            rdfStreamWriter.end();
+        } else {
+            ProvenanceBuilder builder = generate(repository, provenanceNs, state, scope, records -> {
+            }, NO_PROGRESS);
 
-        init(repository.getOwner().getLogin(), repository.getName());
+            new InteropFramework().writeDocument(outputStream, provFormat, builder.drainDocument());
+        }
 
-        processAllAgents(repository);
+        return state.getLastCommitSha();
+    }
 
-        Collections.reverse(repositoryCommits);
-        for (RepositoryCommit repositoryCommit : repositoryCommits) {
-            final String sha = repositoryCommit.getSha();
+    /**
+     * Gets the sha of the newest commit of a repository, without reading its history
+     *
+     * @param repository the repository
+     * @return the sha, or null if the repository has no commits
+     * @throws IOException io exception
+     */
+    public String getHeadSha(Repository repository) throws IOException {
+        try (CommitSource commitSource = commitSourceFactory.getCommitSource(repository)) {
+            return commitSource.getHeadSha();
+        }
+    }
 
-            Commit commit = repositoryCommit.getCommit();
+    /**
+     * Builds the provenance records of the commits pushed after the last commit of a generation state
+     *
+     * @param repository   the repository
+     * @param provenanceNs the provenance namespace, the uri of the resource
+     * @param state        the state of the previous generation
+     * @param scope        the scope of a generation not continuing a previous one, or null for the whole history
+     * @param listener     the listener notified after the agents and after every batch of commits
+     * @param progress     the listener of the progress of the generation
+     * @return the builder holding the records not handed out to the listener, or null if there are no new commits
+     * @throws IOException io exception
+     */
+    private ProvenanceBuilder generate(Repository repository, String provenanceNs, GenerationState state, HistoryScope scope, RecordsListener listener, ProgressListener progress) throws IOException {
+        try (CommitSource commitSource = commitSourceFactory.getCommitSource(repository)) {
+            CommitHistory history;
+            if (scope != null) {
+                history = commitSource.getCommits(scope);
+                if (history == null) {
+                    throw new UnknownRevisionException("The range " + scope.getRange() + " is not part of the history of " + repository.generateId());
+                }
+            } else {
+                history = commitSource.getCommitsSince(state.getLastCommitSha());
+                if (history == null) {
+                    state.reset();
+                    history = commitSource.getCommitsSince(null);
+                }
+            }
+            progress.commitsListed(history.size());
 
-            final String commitMessage = commit.getMessage();
+            if (state.getLastCommitSha() != null) {
+                if (history.size() == 0) {
+                    return null;
+                }
+                state.setIncremental(true);
+            }
 
-            final CommitUser commitAuthor = commit.getAuthor();
-            final Date authorDate = commitAuthor.getDate();
-            final User author = repositoryCommit.getAuthor();
-            String authorName;
+            ProvenanceBuilder builder = new ProvenanceBuilder(provFactory, repository.getOwner().getLogin(), repository.getName(), provenanceNs, state);
+            builder.processAllAgents(commitSource);
+            listener.recordsBuilt(builder);
+
+            int processedCommits = 0;
+            try (CommitFilesReader commitFilesReader = commitSource.readFiles(history)) {
+                while (commitFilesReader.hasNext()) {
+                    RepositoryCommit repositoryCommit = commitFilesReader.next();
+                    if (scope != null) {
+                        filterFiles(scope, repositoryCommit);
+                        seedPreviousVersions(commitSource, builder, repositoryCommit);
+                    }
+                    builder.processCommit(repositoryCommit, repositoryCommit.getFiles());
+                    state.setLastCommitSha(repositoryCommit.getSha());
+                    progress.commitProcessed();
 
-            if (author == null) {
-                authorName = agents.stream().filter(agent -> {
-                    List<Other> otherList = agent.getOther();
-                    for (Other other : otherList) {
-                        if (other.getElementName().getLocalPart().equals("name")) {
-                            return String.valueOf(other.getValue()).equals(repositoryCommit.getCommit().getAuthor().getName());
-                        }
+                    if (++processedCommits % RECORDS_BATCH_SIZE == 0) {
+                        listener.recordsBuilt(builder);
                     }
-                    return true;
-                }).map(agent -> agent.getLabel().get(0).getValue()).collect(Collectors.toList()).get(0);
-            } else {
-                authorName = author.getLogin();
+                }
             }
 
-            Activity activity = processActivity(sha, authorDate, commitMessage);
-            processWasAssociatedWith(sha, authorName, activity.getId());
-
-            // TODO process startedBy
-            // TODO process endedBy
-
-            commitFiles = commitService.getCommit(repository, sha).getFiles();
-            commitFiles.forEach((CommitFile commitFile) -> {
-                final String filename = commitFile.getFilename();
-                Entity newEntity = processEntity(getStandardizedSpecializedFilename(filename, sha), filename);
-                processSpecializationOf(filename, newEntity, sha);
-
-                String status = commitFile.getStatus();
-                switch (status) {
-                    case "added":
-                        processWasGeneratedBy(sha, filename, authorDate, newEntity, activity);
-                        break;
-                    case "removed":
-                        processInvalidatedBy(sha, filename, authorDate, newEntity, activity);
-                        break;
-                    case "modified":
-                        processWasGeneratedBy(sha, filename, authorDate, newEntity, activity);
-                        processUsed(sha, filename, authorDate, activity);
-                        processWasDerivedFrom(sha, filename, commitFile.getAdditions(), commitFile.getChanges(), commitFile.getDeletions());
-                        break;
-                }
-                entities.add(newEntity);
-                registerVersion(filename, sha);
-            });
-            activities.add(activity);
-            processWasInformedBy(sha, activity, repositoryCommit.getParents());
+            return builder;
         }
+    }
 
-        return getDocument(contentType);
+    /**
+     * Leaves out the files of a commit not covered by a scope
+     *
+     * @param scope            the scope
+     * @param repositoryCommit the commit, along with its files
+     */
+    private void filterFiles(HistoryScope scope, RepositoryCommit repositoryCommit) {
+        if (scope.getPath() == null) {
+            return;
+        }
+
+        List<CommitFile> files = new ArrayList<>();
+        for (CommitFile commitFile : repositoryCommit.getFiles()) {
+            if (scope.covers(commitFile.getFilename())) {
+                files.add(commitFile);
+            }
+        }
+        repositoryCommit.setFiles(files);
     }
 
     /**
-     * Constructs the provenance document from the previously populated lists of provenance records objects
+     * Registers the previous version of the files modified by a commit that were not changed by the commits processed
+     * before it, looked up from its first parent
      *
-     * @param contentType
-     * @return the document
+     * @param commitSource     the source of the history
+     * @param builder          the builder of the records
+     * @param repositoryCommit the commit, along with its files
+     * @throws IOException io exception
      */
-    private String getDocument(String contentType) {
-        Document document = provFactory.newDocument();
-        document.setNamespace(namespace);
+    private void seedPreviousVersions(CommitSource commitSource, ProvenanceBuilder builder, RepositoryCommit repositoryCommit) throws IOException {
+        if (repositoryCommit.getParents() == null || repositoryCommit.getParents().isEmpty()) {
+            return;
+        }
+        String parentSha = repositoryCommit.getParents().get(0).getSha();
+
+        for (CommitFile commitFile : repositoryCommit.getFiles()) {
+            String filename = commitFile.getFilename();
+            if ("modified".equals(commitFile.getStatus()) && !builder.hasVersion(filename)) {
+                String previousSha = commitSource.getLastChange(filename, parentSha);
+                if (previousSha != null) {
+                    builder.seedVersion(filename, previousSha);
+                }
+            }
+        }
+    }
 
+    /**
+     * Hands out a batch of records in turtle format, unless it is empty
+     *
+     * @param document the records
+     * @param handler  the handler of the batches
+     * @param progress the listener of the progress of the generation
+     * @throws IOException io exception
+     */
+    private void handleBatch(Document document, BatchHandler handler, ProgressListener progress) throws IOException {
+        if (document.getStatementOrBundle().isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new InteropFramework().writeDocument(os, InteropFramework.ProvFormat.TURTLE, document);
+        handler.batchBuilt(new ByteArrayInputStream(os.toByteArray()));
+        progress.batchHandled();
+    }
+
+    /**
+     * Writes a provenance document in the format corresponding with a content type
+     *
+     * @param document    the document
+     * @param contentType the content type
+     * @return the written document
+     */
+    public String getDocument(Document document, String contentType) {
         OutputStream os = new ByteArrayOutputStream();
-        document.getStatementOrBundle().addAll(activities);
-        document.getStatementOrBundle().addAll(agents);
-        document.getStatementOrBundle().addAll(wasAssociatedWiths);
-        document.getStatementOrBundle().addAll(entities);
-        document.getStatementOrBundle().addAll(baseEntities);
-        document.getStatementOrBundle().addAll(specializationOfs);
-        document.getStatementOrBundle().addAll(wasGeneratedBies);
-        document.getStatementOrBundle().addAll(wasInvalidatedBies);
-        document.getStatementOrBundle().addAll(used);
-        document.getStatementOrBundle().addAll(wasInformedBies);
-        document.getStatementOrBundle().addAll(wasDerivedFroms);
 
+        new InteropFramework().writeDocument(os, getProvFormat(contentType), document);
+        return os.toString();
+    }
+
+    /**
+     * Gets the provenance format corresponding with a content type
+     *
+     * @param contentType the content type
+     * @return the provenance format, null if the content type is not supported
+     */
+    private InteropFramework.ProvFormat getProvFormat(String contentType) {
         InteropFramework.ProvFormat provFormat = null;
 
         switch (contentType) {
@@ -249,317 +367,62 @@ public class ProvenanceService {
                 break;
         }
 
-        interopFramework.writeDocument(os, provFormat, document);
-        return os.toString();
-    }
-
-    /**
-     * Gets qualified name.
-     *
-     * @param name   the name
-     * @param prefix the prefix
-     * @return the qualified name
-     */
-    public QualifiedName getQualifiedName(String name, String prefix) {
-        return namespace.qualifiedName(prefix, qualifiedNameUtils.escapeToXsdLocalName(name), provFactory);
+        return provFormat;
     }
 
     /**
-     * Initializes the list of provenance records objects
+     * Handler of the batches of records of a repository generated in turtle format.
      */
-    private void init(String owner, String repo) {
-        agents = new ArrayList<>();
-        activities = new ArrayList<>();
-        entities = new ArrayList<>();
-        baseEntities = new ArrayList<>();
-        wasAssociatedWiths = new ArrayList<>();
-        specializationOfs = new ArrayList<>();
-        wasGeneratedBies = new ArrayList<>();
-        wasInvalidatedBies = new ArrayList<>();
-        used = new ArrayList<>();
-        wasInformedBies = new ArrayList<>();
-        wasDerivedFroms = new ArrayList<>();
-        entityVersions = new HashMap<>();
-
-        githubUserUrl = "https://github.com/" + owner;
-        githubRepoUrl = githubUserUrl + "/" + repo;
+    public interface BatchHandler {
+
+        /**
+         * Called with every batch of records
+         *
+         * @param batch the records in turtle format
+         * @throws IOException io exception
+         */
+        void batchBuilt(InputStream batch) throws IOException;
     }
 
     /**
-     * Stores all the versions of a file
-     *
-     * @param filename the name of the file
-     * @param sha      the sha of the commit
+     * Listener of the progress of a generation.
      */
-    private void registerVersion(String filename, String sha) {
-        entityVersions.computeIfAbsent(filename, k -> new ArrayList<>());
-
-        List<String> list = entityVersions.get(filename);
-        list.add(sha);
-    }
-
-
-    private Activity processActivity(String sha, Date date, String commitMessage) {
-        String commitUrl = githubRepoUrl + "/commit/" + sha;
-        Activity result;
-
-        List<Attribute> attributes = new ArrayList<>();
-        attributes.add(provFactory.newAttribute(FOAF_NS, "homepage", FOAF_PREFIX, commitUrl, provFactory.getName().XSD_ANY_URI));
-        attributes.add(provFactory.newAttribute(Attribute.AttributeKind.PROV_LABEL, commitMessage, provFactory.getName().XSD_STRING));
-
-        try {
-            XMLGregorianCalendar time = getXmlGregorianCalendar(date);
-            result = provFactory.newActivity(getQualifiedName("commit-" + sha, PROVENANCE_PREFIX), time, null, attributes);
-
-        } catch (DatatypeConfigurationException e) {
-            result = provFactory.newActivity(getQualifiedName("commit-" + sha, PROVENANCE_PREFIX), commitMessage);
+    public interface ProgressListener {
+
+        /**
+         * Called once the commits to process are listed
+         *
+         * @param count the number of commits
+         */
+        default void commitsListed(int count) {
         }
 
-        return result;
-    }
-
-    /**
-     * Generates an entity provenance record object
-     *
-     * @param name  the name of the entity
-     * @param label the label of the entity
-     * @return the generated entity
-     */
-    private Entity processEntity(String name, String label) {
-        return provFactory.newEntity(getQualifiedName(name.replace(' ', '-'), PROVENANCE_PREFIX), label);
-    }
-
-    private void processAllAgents(Repository repository) throws IOException {
-        String type, authorLogin, authorUrl;
-        Agent agent;
-
-        List<Contributor> contributors = repositoryService.getContributors(repository, false);
-
-        for (Contributor contributor : contributors) {
-            type = contributor.getType();
-            authorLogin = contributor.getLogin();
-            authorUrl = githubUserUrl;
-            User user = userService.getUser(authorLogin);
-
-            List<Attribute> attributes = new ArrayList<>();
-            attributes.add(provFactory.newAttribute(Attribute.AttributeKind.PROV_TYPE, type, provFactory.getName().XSD_STRING));
-            attributes.add(provFactory.newAttribute(FOAF_NS, "homepage", FOAF_PREFIX, authorUrl, provFactory.getName().XSD_ANY_URI));
-            attributes.add(provFactory.newAttribute(Attribute.AttributeKind.PROV_LABEL, authorLogin, provFactory.getName().XSD_STRING));
-            attributes.add(provFactory.newAttribute(provenanceNs, "contributions", PROVENANCE_PREFIX, contributor.getContributions(), provFactory.getName().XSD_INT));
-
-            String email = user.getEmail();
-            if (email != null) {
-                attributes.add(provFactory.newAttribute(FOAF_NS, "mbox", FOAF_PREFIX, email, provFactory.getName().XSD_STRING));
-            }
-
-            attributes.add(provFactory.newAttribute(FOAF_NS, "img", FOAF_PREFIX, user.getAvatarUrl(), provFactory.getName().XSD_ANY_URI));
-
-            String name = user.getName();
-            if (name != null) {
-                attributes.add(provFactory.newAttribute(FOAF_NS, "name", FOAF_PREFIX, name, provFactory.getName().XSD_STRING));
-            }
-
-            agent = provFactory.newAgent(getQualifiedName(getAuthorLoginLabel(authorLogin), PROVENANCE_PREFIX), attributes);
-            this.agents.add(agent);
+        /**
+         * Called after every processed commit
+         */
+        default void commitProcessed() {
         }
-    }
-
-    private String getAuthorLoginLabel(String authorLogin) {
-        return authorLogin.replace(' ', '-');
-    }
 
-    /**
-     * Given a filename and a corresponding entity, registers it into the baseEntities if it is the case (if it does not
-     * already exists in there) and into the specializationOfs
-     *
-     * @param filename  the name of the file
-     * @param newEntity the previously generated entity corresponding with the filename
-     */
-    private void processSpecializationOf(String filename, Entity newEntity, String sha) {
-        SpecializationOf specializationOf;
-        String label = newEntity.getLabel().get(0).getValue();
-        Entity baseEntity;
-
-        List<Entity> pastEntities = baseEntities.stream().filter(entity -> entity.getLabel().get(0).getValue().equals(label)).collect(Collectors.toList());
-        if (pastEntities.size() > 0) {
-            baseEntity = pastEntities.get(0);
-        } else {
-            baseEntity = processEntity(getStandardizedBaseFilename(filename), filename);
-            baseEntities.add(baseEntity);
+        /**
+         * Called after every batch of records handed out
+         *
+         * @throws IOException io exception
+         */
+        default void batchHandled() throws IOException {
         }
-
-        specializationOf = provFactory.newSpecializationOf(newEntity.getId(), baseEntity.getId());
-        // specializationOf = provFactory.newQualifiedSpecializationOf(getQualifiedName("specialization-"+baseEntity.getLabel().get(0).getValue()+"-"+sha, PROVENANCE_PREFIX), newEntity.getId(), baseEntity.getId(), null);
-        specializationOfs.add(specializationOf);
     }
 
     /**
-     * Registers a WasGeneratedBy provenance record object
-     *
-     * @param sha       the sha of the commit
-     * @param filename  the name of the file that was generated
-     * @param date      the date of the commit
-     * @param newEntity the previously generated entity
-     * @param activity  the corresponding activity that generated the entity
+     * Listener notified while the provenance records of a repository are built.
      */
-    private void processWasGeneratedBy(String sha, String filename, Date date, Entity newEntity, Activity activity) {
-
-        WasGeneratedBy wasGeneratedBy;
-        try {
-            XMLGregorianCalendar time = getXmlGregorianCalendar(date);
-            wasGeneratedBy = provFactory.newWasGeneratedBy(getQualifiedName("generation-" + getStandardizedBaseFilename(filename) + "-" + sha, PROVENANCE_PREFIX), newEntity.getId(), activity.getId(), time, null);
-        } catch (DatatypeConfigurationException e) {
-            wasGeneratedBy = provFactory.newWasGeneratedBy(getQualifiedName("generation-" + getStandardizedBaseFilename(filename) + "-" + sha, PROVENANCE_PREFIX), newEntity.getId(), activity.getId());
-        }
-
-        wasGeneratedBies.add(wasGeneratedBy);
+    private interface RecordsListener {
+
+        /**
+         * Called after the agents and after every batch of commits were processed
+         *
+         * @param builder the builder holding the records
+         * @throws IOException io exception
+         */
+        void recordsBuilt(ProvenanceBuilder builder) throws IOException;
     }
-
-    /**
-     * Registers an invalidatedBy provenance record object
-     *
-     * @param sha       the sha of the commit
-     * @param filename
-     * @param date      the date of the commit
-     * @param newEntity the previously generated entity
-     * @param activity  the corresponding activity that generated the entity
-     */
-    private void processInvalidatedBy(String sha, String filename, Date date, Entity newEntity, Activity activity) {
-        WasInvalidatedBy wasInvalidatedBy;
-        try {
-            XMLGregorianCalendar time = getXmlGregorianCalendar(date);
-            wasInvalidatedBy = provFactory.newWasInvalidatedBy(getQualifiedName("invalidation-" + getStandardizedBaseFilename(filename) + "-" + sha, PROVENANCE_PREFIX), newEntity.getId(), activity.getId(), time, null);
-        } catch (DatatypeConfigurationException e) {
-            wasInvalidatedBy = provFactory.newWasInvalidatedBy(getQualifiedName("invalidation-" + getStandardizedBaseFilename(filename) + "-" + sha, PROVENANCE_PREFIX), newEntity.getId(), activity.getId());
-        }
-
-        wasInvalidatedBies.add(wasInvalidatedBy);
-    }
-
-    /**
-     * Registers an used provenance record object
-     *
-     * @param sha      the sha of the commit
-     * @param filename the name of the file
-     * @param activity the corresponding activity that generated the entity
-     * @param date     the date of the commit
-     */
-    private void processUsed(String sha, String filename, Date date, Activity activity) {
-        Used u;
-        String parentCommitSha = getParentCommitSha(filename);
-        try {
-            QualifiedName parentEntityQualifiedName;
-            XMLGregorianCalendar time = getXmlGregorianCalendar(date);
-            parentEntityQualifiedName = getQualifiedName(getStandardizedSpecializedFilename(filename, parentCommitSha), PROVENANCE_PREFIX);
-            u = provFactory.newUsed(getQualifiedName("usage-" + getStandardizedBaseFilename(filename) + "-" + sha + "-" + parentCommitSha, PROVENANCE_PREFIX), activity.getId(), parentEntityQualifiedName, time, null);
-        } catch (Exception e) {
-            QualifiedName parentEntityQualifiedName;
-            parentEntityQualifiedName = getQualifiedName(getStandardizedSpecializedFilename(filename, parentCommitSha), PROVENANCE_PREFIX);
-            u = provFactory.newUsed(getQualifiedName("usage-" + getStandardizedBaseFilename(filename) + "-" + sha + "-" + parentCommitSha, PROVENANCE_PREFIX), activity.getId(), parentEntityQualifiedName);
-        }
-
-        used.add(u);
-    }
-
-    /**
-     * Registers an wasAssociated provenance record object
-     *
-     * @param sha        the sha of the commit
-     * @param authorName the author's name
-     * @param activityId the qualified name of the activity that generated the entity
-     */
-    private void processWasAssociatedWith(String sha, String authorName, QualifiedName activityId) {
-        final QualifiedName agentQualifiedName = getQualifiedName(getAuthorLoginLabel(authorName), PROVENANCE_PREFIX);
-        List<Attribute> attributes = new ArrayList<>();
-        WasAssociatedWith wasAssociatedWithResult;
-        attributes.add(provFactory.newAttribute(Attribute.AttributeKind.PROV_ROLE, "authorship", provFactory.getName().XSD_STRING));
-
-        wasAssociatedWithResult = provFactory.newWasAssociatedWith(getQualifiedName("association-" + sha, PROVENANCE_PREFIX), activityId, agentQualifiedName, null, attributes);
-        wasAssociatedWiths.add(wasAssociatedWithResult);
-    }
-
-    /**
-     * Registers an wasDerivedFrom provenance record object
-     *  @param sha      the sha of the commit
-     * @param filename the name of the file
-     * @param additions
-     * @param changes
-     * @param deletions
-     */
-    private void processWasDerivedFrom(String sha, String filename, int additions, int changes, int deletions) {
-        String parentCommitSha = getParentCommitSha(filename);
-        List<Attribute> attributes = new ArrayList<>();
-        QualifiedName generatedEntity = getQualifiedName(getStandardizedSpecializedFilename(filename, sha), PROVENANCE_PREFIX);
-        QualifiedName usedEntity = getQualifiedName(getStandardizedSpecializedFilename(filename, parentCommitSha), PROVENANCE_PREFIX);
-        QualifiedName activity = getQualifiedName("commit-" + sha, PROVENANCE_PREFIX);
-        QualifiedName used = getQualifiedName("usage-" + sha + "-" + parentCommitSha, PROVENANCE_PREFIX);
-        QualifiedName wasDerivedFromId = getQualifiedName("derivation-" + getStandardizedSpecializedFilename(filename, sha) + "-" + parentCommitSha, PROVENANCE_PREFIX);
-        QualifiedName generation = getQualifiedName("generation-" + sha, PROVENANCE_PREFIX);
-
-        attributes.add(provFactory.newAttribute(provenanceNs, "additions", PROVENANCE_PREFIX, additions, provFactory.getName().XSD_INT));
-        attributes.add(provFactory.newAttribute(provenanceNs, "changes", PROVENANCE_PREFIX, changes, provFactory.getName().XSD_INT));
-        attributes.add(provFactory.newAttribute(provenanceNs, "deletions", PROVENANCE_PREFIX, deletions, provFactory.getName().XSD_INT));
-
-        wasDerivedFroms.add(provFactory.newWasDerivedFrom(wasDerivedFromId, generatedEntity, usedEntity, activity, generation, used, attributes));
-    }
-
-    /**
-     * Generates an wasInformedBy provenance record object
-     *
-     * @param sha      the sha of the resource
-     * @param activity the activity that generated the entity
-     * @param parents  the parent commits of the current commit
-     */
-    private void processWasInformedBy(String sha, Activity activity, List<Commit> parents) {
-        String parentSha;
-        for (Commit commit : parents) {
-            parentSha = commit.getSha();
-            wasInformedBies.add(provFactory.newWasInformedBy(getQualifiedName("information-" + parentSha + "-" + sha, PROVENANCE_PREFIX), activity.getId(), getQualifiedName("commit-" + parentSha, PROVENANCE_PREFIX)));
-        }
-    }
-
-    /**
-     * Generates an identifier for a resource within a commit
-     *
-     * @param filename the name of the file
-     * @param sha      the sha of the commit
-     * @return the identifier
-     */
-    private String getStandardizedSpecializedFilename(String filename, String sha) {
-        return getStandardizedBaseFilename(filename) + "_commit-" + sha;
-    }
-
-    /**
-     * Generates an identifier for a generic file
-     *
-     * @param filename the name of the file
-     * @return the identifier
-     */
-    private String getStandardizedBaseFilename(String filename) {
-        return "file-" + filename.replaceAll("[/\\\\. ]", "-");
-    }
-
-    /**
-     * Provides the sha of the last commit that modified the resource with the filename
-     *
-     * @param filename the name of the file
-     * @return the parent commit sha
-     */
-    private String getParentCommitSha(String filename) {
-        List<String> list = entityVersions.get(filename);
-        return list.get(list.size() - 1);
-    }
-
-    /**
-     * Transforms a Date object into a XMLGregorianCalendar object
-     *
-     * @param date the Date object
-     * @return the MLGregorianCalendar object
-     */
-    private XMLGregorianCalendar getXmlGregorianCalendar(Date date) throws DatatypeConfigurationException {
-        GregorianCalendar gregorianCalendar = new GregorianCalendar();
-        gregorianCalendar.setTime(date);
-        return DatatypeFactory.newInstance().newXMLGregorianCalendar(gregorianCalendar);
-    }
-
 }
@@ -0,0 +1,15 @@
+package ro.uaic.info.gitprov.services;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a SPARQL query asks for more solutions than a query may return.
+ */
+public class QueryLimitExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public QueryLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package ro.uaic.info.gitprov.services;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a SPARQL query is not executed because too many queries are already running.
+ */
+public class QueryRejectedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Whether the query was rejected because the queue of waiting queries was full, rather than after waiting.
+     */
+    private final boolean queueFull;
+
+    /**
+     * Instantiates a new Query rejected exception.
+     *
+     * @param message   the message
+     * @param queueFull whether the queue of waiting queries was full
+     */
+    public QueryRejectedException(String message, boolean queueFull) {
+        super(message);
+        this.queueFull = queueFull;
+    }
+
+    public boolean isQueueFull() {
+        return queueFull;
+    }
+}
@@ -0,0 +1,15 @@
+package ro.uaic.info.gitprov.services;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the commits after the base of the scope of a generation are more than may be read from a comparison.
+ */
+public class RangeTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RangeTooLargeException(String message) {
+        super(message);
+    }
+}
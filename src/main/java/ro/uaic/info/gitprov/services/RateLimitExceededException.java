@@ -0,0 +1,26 @@
+package ro.uaic.info.gitprov.services;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Thrown when every token reached its Github rate limit and the earliest reset is further than the maximum wait.
+ */
+public class RateLimitExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The time the earliest rate limit resets, in milliseconds since the epoch.
+     */
+    private final long resetTime;
+
+    public RateLimitExceededException(long resetTime) {
+        super("Github rate limit reached, it resets at " + new Date(resetTime));
+        this.resetTime = resetTime;
+    }
+
+    public long getResetTime() {
+        return resetTime;
+    }
+}
@@ -0,0 +1,470 @@
+package ro.uaic.info.gitprov.services;
+
+import org.apache.log4j.Logger;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.RequestException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Github client spreading its requests over a pool of tokens and pacing them. Every request is made with the token
+ * having the most requests left until its rate limit resets, as of the last response made with it. When every token is
+ * spent, a request waits for the earliest reset, or fails with a {@link RateLimitExceededException} if the reset is
+ * further than the maximum wait. A request rejected because its token was spent in the meantime is made again. When a
+ * response cache is set, the responses are served from it as described by {@link GitHubResponseCache}.
+ */
+public class RateLimitedGitHubClient extends GitHubClient {
+
+    /**
+     * The constant logger.
+     */
+    final static Logger logger = Logger.getLogger(RateLimitedGitHubClient.class);
+
+    private static final String HEADER_RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+
+    private static final String HEADER_RATE_LIMIT_LIMIT = "X-RateLimit-Limit";
+
+    private static final String HEADER_RATE_LIMIT_RESET = "X-RateLimit-Reset";
+
+    private static final String HEADER_ETAG = "ETag";
+
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    private static final String HEADER_LINK = "Link";
+
+    private final List<Token> tokens = new ArrayList<>();
+
+    /**
+     * The number of requests made per second on average, unpaced if 0.
+     */
+    private final double requestsPerSecond;
+
+    /**
+     * The number of requests that can be made at once after an idle period.
+     */
+    private final double burst;
+
+    /**
+     * The time a request waits for a rate limit reset before failing.
+     */
+    private final long maxWaitMs;
+
+    /**
+     * The requests that can be made right away, negative when requests are waiting for their turn.
+     */
+    private double available;
+
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * The token used by the request being made on the current thread.
+     */
+    private final ThreadLocal<Token> currentToken = new ThreadLocal<>();
+
+    /**
+     * The token picked for the next request of the current thread before its connection is opened, null if the token
+     * is picked when the connection is opened.
+     */
+    private final ThreadLocal<Token> reservedToken = new ThreadLocal<>();
+
+    /**
+     * The cache of the responses, null if they are not cached.
+     */
+    private GitHubResponseCache responseCache;
+
+    /**
+     * Instantiates a new rate limited Github client.
+     *
+     * @param hostname          the host of the Github API
+     * @param port              the port
+     * @param scheme            the scheme
+     * @param tokens            the OAuth2 tokens, an unauthenticated client if empty
+     * @param requestsPerSecond the number of requests made per second on average, unpaced if 0
+     * @param burst             the number of requests that can be made at once after an idle period
+     * @param maxWaitMs         the time a request waits for a rate limit reset before failing
+     */
+    public RateLimitedGitHubClient(String hostname, int port, String scheme, List<String> tokens, double requestsPerSecond, int burst, long maxWaitMs) {
+        super(hostname, port, scheme);
+        if (tokens.isEmpty()) {
+            this.tokens.add(new Token(null));
+        } else {
+            tokens.forEach(token -> this.tokens.add(new Token(token)));
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxWaitMs = maxWaitMs;
+        this.available = this.burst;
+    }
+
+    /**
+     * Sets the cache of the responses
+     *
+     * @param responseCache the cache
+     * @return this client
+     */
+    public RateLimitedGitHubClient setResponseCache(GitHubResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
+    @Override
+    public GitHubResponse get(GitHubRequest request) throws IOException {
+        while (true) {
+            try {
+                return responseCache == null ? super.get(request) : getThroughCache(request);
+            } catch (RequestException e) {
+                if (!isRateLimited(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public InputStream getStream(GitHubRequest request) throws IOException {
+        while (true) {
+            try {
+                return super.getStream(request);
+            } catch (RequestException e) {
+                if (!isRateLimited(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves a request from the response cache when possible, otherwise makes it, conditionally if a previous response
+     * is cached, and caches the response. The token of a request for a resource that may change is picked first, as
+     * only the responses made with the same token are revalidated.
+     *
+     * @param request the request
+     * @return the response
+     * @throws IOException io exception
+     */
+    private GitHubResponse getThroughCache(GitHubRequest request) throws IOException {
+        String uri = request.generateUri();
+        String accept = request.getResponseContentType();
+        boolean immutable = GitHubResponseCache.isImmutable(uri);
+
+        HttpURLConnection connection;
+        GitHubResponseCache.Response cached;
+        byte[] cachedBody;
+        String key;
+        try {
+            Token token = immutable ? null : acquireToken();
+            reservedToken.set(token);
+            key = GitHubResponseCache.getKey(uri, accept, token == null ? null : token.value);
+
+            cached = responseCache.get(key);
+            cachedBody = cached == null ? null : cached.readBody();
+            if (cachedBody != null && cached.isImmutable()) {
+                return new CachedResponse(cached.getLink(), getBody(request, new ByteArrayInputStream(cachedBody)));
+            }
+
+            connection = createGet(uri);
+        } finally {
+            reservedToken.remove();
+        }
+        if (accept != null) {
+            connection.setRequestProperty(HEADER_ACCEPT, accept);
+        }
+        if (cachedBody != null && cached.getETag() != null) {
+            connection.setRequestProperty(HEADER_IF_NONE_MATCH, cached.getETag());
+        }
+
+        int code = connection.getResponseCode();
+        updateRateLimits(connection);
+
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cachedBody != null) {
+            return new CachedResponse(cached.getLink(), getBody(request, new ByteArrayInputStream(cachedBody)));
+        }
+
+        if (isOk(code)) {
+            byte[] body = readFully(getStream(connection));
+            String eTag = connection.getHeaderField(HEADER_ETAG);
+
+            if (immutable || eTag != null) {
+                responseCache.put(key, immutable, eTag, connection.getHeaderField(HEADER_LINK), body);
+            }
+            return new GitHubResponse(connection, getBody(request, new ByteArrayInputStream(body)));
+        }
+
+        if (isEmpty(code)) {
+            return new GitHubResponse(connection, null);
+        }
+
+        throw createException(getStream(connection), code, connection.getResponseMessage());
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        try (InputStream stream = inputStream) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                result.write(buffer, 0, read);
+            }
+            return result.toByteArray();
+        }
+    }
+
+    /**
+     * Picks the token of a request, unless it was picked already, and waits for its turn before opening the connection.
+     * The request is counted by the request counter of the current thread.
+     */
+    @Override
+    protected HttpURLConnection createConnection(String uri, String method) throws IOException {
+        Token token = reservedToken.get();
+        if (token == null) {
+            token = acquireToken();
+        } else {
+            reservedToken.remove();
+        }
+        pace();
+
+        GitHubRequestCounter.countRequest();
+        currentToken.set(token);
+        HttpURLConnection connection = super.createConnection(uri, method);
+        if (token.value != null) {
+            connection.setRequestProperty(HEADER_AUTHORIZATION, "token " + token.value);
+        }
+        return connection;
+    }
+
+    /**
+     * Updates the rate limit of the token of the request from the headers of its response. The rate limit of the
+     * client itself is not updated, as it would mix the responses of every token and thread.
+     */
+    @Override
+    protected GitHubClient updateRateLimits(HttpURLConnection request) {
+        Token token = currentToken.get();
+        if (token == null) {
+            return this;
+        }
+
+        long remaining = parseHeader(request, HEADER_RATE_LIMIT_REMAINING);
+        long limit = parseHeader(request, HEADER_RATE_LIMIT_LIMIT);
+        long reset = parseHeader(request, HEADER_RATE_LIMIT_RESET);
+
+        synchronized (this) {
+            if (remaining >= 0) {
+                token.remaining = (int) remaining;
+            }
+            if (limit >= 0) {
+                token.limit = (int) limit;
+            }
+            if (reset >= 0) {
+                token.resetTime = TimeUnit.SECONDS.toMillis(reset);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Reads a rate limit header of a response
+     *
+     * @param request the connection of the request
+     * @param name    the name of the header
+     * @return the value, -1 if missing or invalid
+     */
+    private static long parseHeader(HttpURLConnection request, String name) {
+        String value = request.getHeaderField(name);
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid rate limit header " + name + ": " + value);
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the number of requests left until the rate limits reset, summed over the tokens
+     *
+     * @return the number of requests, -1 if unknown
+     */
+    @Override
+    public synchronized int getRemainingRequests() {
+        return sum(true);
+    }
+
+    /**
+     * Gets the number of requests allowed between rate limit resets, summed over the tokens
+     *
+     * @return the number of requests, -1 if unknown
+     */
+    @Override
+    public synchronized int getRequestLimit() {
+        return sum(false);
+    }
+
+    private int sum(boolean remaining) {
+        int result = -1;
+        long now = System.currentTimeMillis();
+
+        for (Token token : tokens) {
+            int value = remaining ? (token.resetTime <= now && token.limit >= 0 ? token.limit : token.remaining) : token.limit;
+            if (value >= 0) {
+                result = Math.max(result, 0) + value;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Whether a request was rejected because the rate limit of its token was reached
+     *
+     * @param e the exception of the request
+     * @return whether the request may be made again
+     */
+    private boolean isRateLimited(RequestException e) {
+        Token token = currentToken.get();
+        if (e.getStatus() != HttpURLConnection.HTTP_FORBIDDEN || token == null) {
+            return false;
+        }
+
+        synchronized (this) {
+            return token.remaining == 0;
+        }
+    }
+
+    /**
+     * Picks the token with the most requests left, waiting for the earliest reset if every token is spent
+     *
+     * @return the token
+     * @throws IOException if the reset is further than the maximum wait
+     */
+    private Token acquireToken() throws IOException {
+        while (true) {
+            long waitMs;
+
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                Token best = null;
+                long earliestReset = Long.MAX_VALUE;
+
+                for (Token token : tokens) {
+                    if (token.remaining == 0 && token.resetTime <= now) {
+                        token.remaining = token.limit;
+                    }
+                    if (token.remaining != 0 && (best == null || available(token) > available(best))) {
+                        best = token;
+                    }
+                    earliestReset = Math.min(earliestReset, token.resetTime);
+                }
+
+                if (best != null) {
+                    if (best.remaining > 0) {
+                        best.remaining--;
+                    }
+                    return best;
+                }
+
+                waitMs = earliestReset - now;
+                if (waitMs > maxWaitMs) {
+                    throw new RateLimitExceededException(earliestReset);
+                }
+            }
+
+            logger.warn("Github rate limit reached, waiting " + waitMs + "ms for the reset");
+            sleep(TimeUnit.MILLISECONDS.toNanos(waitMs));
+        }
+    }
+
+    private static long available(Token token) {
+        return token.remaining < 0 ? Long.MAX_VALUE : token.remaining;
+    }
+
+    /**
+     * Waits for the turn of a request, the requests being let through at a steady rate after the burst
+     *
+     * @throws IOException if interrupted
+     */
+    private void pace() throws IOException {
+        if (requestsPerSecond <= 0) {
+            return;
+        }
+
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            available = Math.min(burst, available + (now - lastRefill) * requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefill = now;
+            available--;
+            waitNanos = available >= 0 ? 0 : (long) (-available * TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        }
+
+        sleep(waitNanos);
+    }
+
+    private static void sleep(long nanos) throws IOException {
+        if (nanos <= 0) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Github rate limit");
+        }
+    }
+
+    /**
+     * A response served from the cache, whose only header is the link to the other pages.
+     */
+    private static class CachedResponse extends GitHubResponse {
+
+        private final String link;
+
+        private CachedResponse(String link, Object body) {
+            super(null, body);
+            this.link = link;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return HEADER_LINK.equals(name) ? link : null;
+        }
+    }
+
+    /**
+     * A token and its rate limit, as of the last response made with it.
+     */
+    private static class Token {
+
+        private final String value;
+
+        /**
+         * The number of requests left, -1 if unknown.
+         */
+        private int remaining = -1;
+
+        private int limit = -1;
+
+        /**
+         * The time the rate limit resets, in milliseconds since the epoch.
+         */
+        private long resetTime;
+
+        private Token(String value) {
+            this.value = value;
+        }
+    }
+}
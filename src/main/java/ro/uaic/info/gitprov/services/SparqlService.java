@@ -3,33 +3,343 @@ package ro.uaic.info.gitprov.services;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.sparql.resultset.ResultsFormat;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
+import javax.annotation.PostConstruct;
 import java.io.IOException;
-
-import static ro.uaic.info.gitprov.utils.JenaUtils.buildModelFromString;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class SparqlService {
 
-    public String getQueryResult(String document, String query, String format) throws IOException {
-        Model model = buildModelFromString(document);
+    /**
+     * The separator of the parts of a result key.
+     */
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    /**
+     * The number of parsed queries kept.
+     */
+    @Value("${gitprov.sparql.query-cache-size:500}")
+    private int queryCacheSize;
+
+    /**
+     * The number of query results kept.
+     */
+    @Value("${gitprov.sparql.result-cache-size:1000}")
+    private int resultCacheSize;
+
+    /**
+     * The size in bytes from which a query result is not kept.
+     */
+    @Value("${gitprov.sparql.result-cache-max-length:1048576}")
+    private int resultCacheMaxLength;
+
+    /**
+     * The time after which a query is cancelled, in milliseconds, no limit if not positive.
+     */
+    @Value("${gitprov.sparql.timeout-ms:30000}")
+    private long queryTimeout;
+
+    /**
+     * The maximum number of solutions returned by a query, no limit if not positive. A query without a limit is
+     * limited to it, a query with a higher limit is rejected.
+     */
+    @Value("${gitprov.sparql.max-results:100000}")
+    private long maxResults;
+
+    /**
+     * The number of queries executed at the same time.
+     */
+    @Value("${gitprov.sparql.max-concurrent:4}")
+    private int maxConcurrentQueries;
+
+    /**
+     * The number of queries waiting to be executed, over which a query is rejected right away.
+     */
+    @Value("${gitprov.sparql.max-waiting:16}")
+    private int maxWaitingQueries;
+
+    /**
+     * The time a query waits to be executed before being rejected, in milliseconds.
+     */
+    @Value("${gitprov.sparql.max-wait-ms:5000}")
+    private long maxWait;
+
+    private Semaphore executionPermits;
 
-        return executeQuery(model, query, format);
+    private final AtomicInteger waitingQueries = new AtomicInteger();
+
+    /**
+     * The parsed queries, by normalized query text, from the least to the most recently used. They are only read once
+     * cached, every execution cloning its query.
+     */
+    private final Map<String, Query> queries = Collections.synchronizedMap(new LinkedHashMap<String, Query>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+            return size() > queryCacheSize;
+        }
+    });
+
+    /**
+     * The query results, by graph, graph version, normalized query text and format, from the least to the most
+     * recently used.
+     */
+    private final Map<String, byte[]> results = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > resultCacheSize;
+        }
+    });
+
+    /**
+     * Creates the permits of the concurrently executed queries.
+     */
+    @PostConstruct
+    public void init() {
+        executionPermits = new Semaphore(maxConcurrentQueries, true);
     }
 
-    private String executeQuery(Model model, String query, String format) {
-        Query qry = QueryFactory.create(query);
-        QueryExecution qe = QueryExecutionFactory.create(qry, model);
+    /**
+     * Waits until a query may be executed. The query is rejected right away when too many queries are already waiting,
+     * or after the maximum waiting time.
+     *
+     * @return the permit, to be closed once the query is executed
+     * @throws QueryRejectedException if the query may not be executed
+     */
+    public Permit acquirePermit() throws QueryRejectedException {
+        if (executionPermits.tryAcquire()) {
+            return executionPermits::release;
+        }
 
-        ResultSet resultSet = qe.execSelect();
-        String result = getResultByFormat(resultSet, format);
-        qe.close();
+        if (waitingQueries.incrementAndGet() > maxWaitingQueries) {
+            waitingQueries.decrementAndGet();
+            throw new QueryRejectedException("Too many queries waiting", true);
+        }
 
+        try {
+            if (!executionPermits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                throw new QueryRejectedException("Timed out waiting for the query to be executed", false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryRejectedException("Interrupted waiting for the query to be executed", false);
+        } finally {
+            waitingQueries.decrementAndGet();
+        }
+
+        return executionPermits::release;
+    }
+
+    /**
+     * Executes a select query against a model, which may be backed by the store, and writes its result to a stream as
+     * the solutions are found. The query execution is closed once the result is written, and cancelled when it runs
+     * longer than the configured timeout.
+     *
+     * @param model        the model
+     * @param query        the query
+     * @param format       the content type of the result
+     * @param outputStream the stream the result is written to
+     * @throws IOException io exception, or a {@link QueryLimitExceededException} if the limit of the query is too high
+     */
+    public void writeQueryResult(Model model, String query, String format, OutputStream outputStream) throws IOException {
+        writeQueryResult(QueryExecutionFactory.create(getExecutionQuery(query), model), format, outputStream);
+    }
+
+    /**
+     * Executes a select query against the union of some graphs of a dataset and writes its result to a stream as the
+     * solutions are found. The graphs replace the dataset description of the query: they form its default graph and
+     * are also available as named graphs, so the query can tell which graph a solution comes from.
+     *
+     * @param dataset      the dataset
+     * @param graphNames   the names of the graphs
+     * @param query        the query
+     * @param format       the content type of the result
+     * @param outputStream the stream the result is written to
+     * @throws IOException io exception, or a {@link QueryLimitExceededException} if the limit of the query is too high
+     */
+    public void writeQueryResult(Dataset dataset, List<String> graphNames, String query, String format, OutputStream outputStream) throws IOException {
+        Query datasetQuery = getExecutionQuery(query);
+
+        datasetQuery.getGraphURIs().clear();
+        datasetQuery.getNamedGraphURIs().clear();
+        for (String graphName : graphNames) {
+            datasetQuery.addGraphURI(graphName);
+            datasetQuery.addNamedGraphURI(graphName);
+        }
+
+        writeQueryResult(QueryExecutionFactory.create(datasetQuery, dataset), format, outputStream);
+    }
+
+    /**
+     * Gets the limit put on the number of solutions of a query, if the query sets none. The result of such a query is
+     * cut at that limit, so a client getting as many solutions cannot tell whether there are more.
+     *
+     * @param query the query
+     * @return the limit, -1 if the query sets its own limit or there is no maximum
+     * @throws QueryLimitExceededException if the query sets a limit higher than the maximum
+     */
+    public long getImposedLimit(String query) throws QueryLimitExceededException {
+        Query parsedQuery = getQuery(query);
+        checkLimit(parsedQuery);
+
+        return maxResults > 0 && !parsedQuery.hasLimit() ? maxResults : -1;
+    }
+
+    /**
+     * Gets the cached result of a query against a version of a stored graph
+     *
+     * @param graphName    the name of the graph
+     * @param graphVersion the version of the graph
+     * @param query        the query
+     * @param format       the content type of the result
+     * @return the result, null if it is not cached
+     */
+    public byte[] getCachedResult(String graphName, long graphVersion, String query, String format) {
+        return results.get(getResultKey(graphName, graphVersion, query, format));
+    }
+
+    /**
+     * Gets the size in bytes from which a query result is not cached
+     *
+     * @return the size
+     */
+    public int getResultCacheMaxLength() {
+        return resultCacheMaxLength;
+    }
+
+    /**
+     * Caches the result of a query against a version of a stored graph, unless it is too long
+     *
+     * @param graphName    the name of the graph
+     * @param graphVersion the version of the graph
+     * @param query        the query
+     * @param format       the content type of the result
+     * @param result       the result
+     */
+    public void cacheResult(String graphName, long graphVersion, String query, String format, byte[] result) {
+        if (result.length <= resultCacheMaxLength) {
+            results.put(getResultKey(graphName, graphVersion, query, format), result);
+        }
+    }
+
+    /**
+     * Forgets the cached results of the queries against a graph
+     *
+     * @param graphName the name of the graph
+     */
+    public void invalidateResults(String graphName) {
+        String prefix = graphName + KEY_SEPARATOR;
+
+        synchronized (results) {
+            results.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    /**
+     * Gets a query to execute, limited to the configured maximum number of solutions if it sets no limit
+     *
+     * @param query the query text
+     * @return a clone of the parsed query
+     * @throws QueryLimitExceededException if the query sets a limit higher than the maximum
+     */
+    private Query getExecutionQuery(String query) throws QueryLimitExceededException {
+        Query result = getQuery(query).cloneQuery();
+        checkLimit(result);
+
+        if (maxResults > 0 && !result.hasLimit()) {
+            result.setLimit(maxResults);
+        }
         return result;
     }
 
+    private void checkLimit(Query query) throws QueryLimitExceededException {
+        if (maxResults > 0 && query.hasLimit() && query.getLimit() > maxResults) {
+            throw new QueryLimitExceededException("The query limit " + query.getLimit() + " is over the maximum of " + maxResults + " solutions");
+        }
+    }
+
+    /**
+     * Gets a parsed query, parsing it only the first time its normalized text is seen. The parsed query is shared by
+     * every thread executing the same text, so it is never executed itself: every execution works on a clone of it.
+     *
+     * @param query the query text
+     * @return the parsed query, to be cloned before it is executed
+     */
+    private Query getQuery(String query) {
+        String normalizedQuery = normalizeQuery(query);
+        Query result = queries.get(normalizedQuery);
+
+        if (result == null) {
+            result = QueryFactory.create(query);
+            queries.put(normalizedQuery, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Normalizes the text of a query by trimming its lines and dropping the blank ones, unless it holds long literals
+     * whose lines must be kept as they are
+     *
+     * @param query the query text
+     * @return the normalized text
+     */
+    private String normalizeQuery(String query) {
+        if (query.contains("\"\"\"") || query.contains("'''")) {
+            return query.trim();
+        }
+
+        StringBuilder result = new StringBuilder(query.length());
+        for (String line : query.split("\\R")) {
+            String trimmedLine = line.trim();
+            if (!trimmedLine.isEmpty()) {
+                if (result.length() > 0) {
+                    result.append('\n');
+                }
+                result.append(trimmedLine);
+            }
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Writes the result of a query execution, then closes it
+     *
+     * @param qe           the query execution
+     * @param format       the content type of the result
+     * @param outputStream the stream the result is written to
+     * @throws IOException io exception
+     */
+    private void writeQueryResult(QueryExecution qe, String format, OutputStream outputStream) throws IOException {
+        try {
+            if (queryTimeout > 0) {
+                qe.setTimeout(queryTimeout, TimeUnit.MILLISECONDS);
+            }
+            writeResultByFormat(qe.execSelect(), format, outputStream);
+        } finally {
+            qe.close();
+        }
+        outputStream.flush();
+    }
+
+    private String getResultKey(String graphName, long graphVersion, String query, String format) {
+        return graphName + KEY_SEPARATOR + graphVersion + KEY_SEPARATOR + format + KEY_SEPARATOR + normalizeQuery(query);
+    }
+
     private ResultsFormat getFormat(String format) {
         ResultsFormat resultsFormat;
         switch (format) {
@@ -55,30 +365,42 @@ public class SparqlService {
         return resultsFormat;
     }
 
-    private String getResultByFormat(ResultSet resultSet, String format) {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    /**
+     * Writes the solutions of a query in the format corresponding with a content type. Every format but the text table,
+     * whose column widths depend on all the solutions, is written row by row.
+     *
+     * @param resultSet    the solutions
+     * @param format       the content type
+     * @param outputStream the stream the solutions are written to
+     */
+    private void writeResultByFormat(ResultSet resultSet, String format, OutputStream outputStream) {
         switch (format) {
             case "text/plain":
-                return ResultSetFormatter.asText(resultSet);
+                ResultSetFormatter.out(outputStream, resultSet);
+                break;
             case "application/xml":
-                return ResultSetFormatter.asXMLString(resultSet, null);
+                ResultSetFormatter.outputAsXML(outputStream, resultSet);
+                break;
             case "text/csv":
-                ResultSetFormatter.outputAsCSV(byteArrayOutputStream, resultSet);
-
-                return byteArrayOutputStream.toString();
+                ResultSetFormatter.outputAsCSV(outputStream, resultSet);
+                break;
             case "application/json":
-                ResultSetFormatter.outputAsJSON(byteArrayOutputStream, resultSet);
-
-                return byteArrayOutputStream.toString();
+                ResultSetFormatter.outputAsJSON(outputStream, resultSet);
+                break;
             case "text/tab-separated-values":
-                ResultSetFormatter.outputAsTSV(byteArrayOutputStream, resultSet);
-
-                return byteArrayOutputStream.toString();
+                ResultSetFormatter.outputAsTSV(outputStream, resultSet);
+                break;
             default:
-                ResultSetFormatter.output(byteArrayOutputStream, resultSet, getFormat(format));
-                return byteArrayOutputStream.toString();
+                ResultSetFormatter.output(outputStream, resultSet, getFormat(format));
         }
-
     }
 
+    /**
+     * The permission to execute a query, released when closed.
+     */
+    public interface Permit extends AutoCloseable {
+
+        @Override
+        void close();
+    }
 }
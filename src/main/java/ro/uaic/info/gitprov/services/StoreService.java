@@ -2,17 +2,30 @@ package ro.uaic.info.gitprov.services;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.ReadWrite;
-import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.vocabulary.RDF;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ro.uaic.info.gitprov.models.GenerationState;
+import ro.uaic.info.gitprov.utils.CapturingOutputStream;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static ro.uaic.info.gitprov.utils.JenaUtils.buildModelFromString;
 import static ro.uaic.info.gitprov.utils.JenaUtils.getDocumentFromModel;
@@ -26,21 +39,143 @@ public class StoreService {
     final static Logger logger = Logger.getLogger(StoreService.class);
 
     public static final String DATABASE_DIRECTORY = "TDBStore";
+
+    /**
+     * The prefix of the named graph that holds the generation state of a stored repository, followed by the name of
+     * the stored document. Document names never contain a colon, so no document can be taken for a state.
+     */
+    public static final String STATE_GRAPH_PREFIX = "urn:gitprov:state:";
+
+    /**
+     * The vocabulary used to describe the generation state.
+     */
+    private static final String STATE_NS = "urn:gitprov:state#";
+    private static final Resource REPOSITORY_STATE = ResourceFactory.createResource(STATE_NS + "repository");
+    private static final Property LAST_COMMIT = ResourceFactory.createProperty(STATE_NS, "lastCommit");
+    private static final Property PATH = ResourceFactory.createProperty(STATE_NS, "path");
+    private static final Property VERSION = ResourceFactory.createProperty(STATE_NS, "version");
+
+    /**
+     * The type of the agents in the stored provenance documents.
+     */
+    private static final Resource PROV_AGENT = ResourceFactory.createResource("http://www.w3.org/ns/prov#Agent");
+
     @Autowired
     SparqlService sparqlService;
     private Dataset dataset;
 
+    /**
+     * The number of times each graph was rewritten since the start of the application.
+     */
+    private final Map<String, Long> graphVersions = new ConcurrentHashMap<>();
+
+    /**
+     * The name under which the results of the queries against several stored documents are cached.
+     */
+    private static final String STORE_SCOPE = "*";
+
+    /**
+     * The number of times any graph was rewritten since the start of the application.
+     */
+    private final AtomicLong storeVersion = new AtomicLong();
+
     public StoreService() {
         new File(DATABASE_DIRECTORY).mkdir();
         dataset = TDBFactory.createDataset(DATABASE_DIRECTORY);
     }
 
-    public void storeDocument(String documentName, String document) throws IOException {
-        Model model = buildModelFromString(document);
+    /**
+     * Stores a provenance document together with the state of the generation that produced it. When the generation
+     * was incremental the records are appended to the stored ones, the agents being replaced by their new
+     * description, otherwise the stored document is replaced.
+     *
+     * @param documentName the name of the stored document
+     * @param document     the document in turtle format
+     * @param state        the state of the generation
+     * @throws IOException the io exception
+     */
+    public void storeDocument(String documentName, String document, GenerationState state) throws IOException {
+        storeModel(documentName, buildModelFromString(document), state, !state.isIncremental());
+    }
+
+    /**
+     * Opens a writer storing a provenance document by batches of records, as they are generated. Every batch is
+     * committed together with the state of the generation once it was processed, so an interrupted generation is
+     * continued from its last stored batch.
+     *
+     * @param documentName the name of the stored document
+     * @param state        the state of the generation, updated while the batches are generated
+     * @return the writer
+     */
+    public BatchWriter newBatchWriter(String documentName, GenerationState state) {
+        return new BatchWriter(documentName, state);
+    }
+
+    /**
+     * Adds records to a stored document in a single transaction, together with the state of the generation that
+     * produced them. The agents described by the records replace the stored ones.
+     *
+     * @param documentName the name of the stored document
+     * @param model        the records
+     * @param state        the state of the generation
+     * @param replace      whether the stored document and state are dropped first
+     * @throws IOException the io exception
+     */
+    private void storeModel(String documentName, Model model, GenerationState state, boolean replace) throws IOException {
+        String stateGraphName = getStateGraphName(documentName);
+
         dataset.begin(ReadWrite.WRITE);
-        dataset.addNamedModel(documentName, model);
-        dataset.commit();
-        dataset.end();
+        try {
+            if (replace) {
+                dataset.removeNamedModel(documentName);
+                dataset.removeNamedModel(stateGraphName);
+                dataset.addNamedModel(documentName, model);
+            } else {
+                Model storedModel = dataset.getNamedModel(documentName);
+                model.listSubjectsWithProperty(RDF.type, PROV_AGENT).forEachRemaining(agent -> storedModel.removeAll(agent, null, null));
+                storedModel.add(model);
+            }
+
+            writeGenerationState(dataset.getNamedModel(stateGraphName), state);
+            dataset.commit();
+        } finally {
+            dataset.end();
+        }
+        state.clearChangedFiles();
+
+        graphVersions.merge(documentName, 1L, Long::sum);
+        storeVersion.incrementAndGet();
+        sparqlService.invalidateResults(documentName);
+        sparqlService.invalidateResults(STORE_SCOPE);
+    }
+
+    /**
+     * Gets the state of the generation that produced a stored document
+     *
+     * @param documentName the name of the stored document
+     * @return the generation state, empty if the document is not stored
+     */
+    public GenerationState getGenerationState(String documentName) {
+        GenerationState state = new GenerationState();
+        String stateGraphName = getStateGraphName(documentName);
+
+        dataset.begin(ReadWrite.READ);
+        try {
+            if (dataset.containsNamedModel(documentName) && dataset.containsNamedModel(stateGraphName)) {
+                Model model = dataset.getNamedModel(stateGraphName);
+                Statement lastCommit = model.getProperty(REPOSITORY_STATE, LAST_COMMIT);
+
+                if (lastCommit != null) {
+                    state.setLastCommitSha(lastCommit.getString());
+                    model.listStatements(null, VERSION, (RDFNode) null).forEachRemaining(statement ->
+                            state.getFileVersions().put(statement.getSubject().getProperty(PATH).getString(), statement.getString()));
+                }
+            }
+        } finally {
+            dataset.end();
+        }
+
+        return state;
     }
 
     public String getDocument(String namedModel, String contentType) throws IOException {
@@ -58,6 +193,102 @@ public class StoreService {
         return result;
     }
 
+    /**
+     * Executes a select query against a stored document, in a read transaction on its named graph, so the query is
+     * evaluated with the indexes of the store. The result is written to a stream as it is produced, and cached until
+     * the document is stored again if it is small enough. The query waits for one of the execution permits of the
+     * SPARQL service before the transaction is started.
+     *
+     * @param namedModel   the name of the stored document
+     * @param query        the query
+     * @param format       the content type of the result
+     * @param outputStream the stream the result is written to
+     * @throws IOException if the document is not stored or the query is rejected
+     */
+    public void executeQuery(String namedModel, String query, String format, OutputStream outputStream) throws IOException {
+        // read before the transaction, as the version is changed once a rewrite is committed
+        long graphVersion = graphVersions.getOrDefault(namedModel, 0L);
+        byte[] result = sparqlService.getCachedResult(namedModel, graphVersion, query, format);
+        if (result != null) {
+            outputStream.write(result);
+            return;
+        }
+
+        CapturingOutputStream capturingOutputStream = new CapturingOutputStream(outputStream, sparqlService.getResultCacheMaxLength());
+        SparqlService.Permit permit = sparqlService.acquirePermit();
+        try {
+            dataset.begin(ReadWrite.READ);
+            try {
+                if (!dataset.containsNamedModel(namedModel)) {
+                    throw new IOException("Repository not stored!");
+                }
+
+                sparqlService.writeQueryResult(dataset.getNamedModel(namedModel), query, format, capturingOutputStream);
+            } finally {
+                dataset.end();
+            }
+        } finally {
+            permit.close();
+        }
+
+        result = capturingOutputStream.getCopy();
+        if (result != null) {
+            sparqlService.cacheResult(namedModel, graphVersion, query, format, result);
+        }
+    }
+
+    /**
+     * Executes a select query against the union of several stored documents, or of all of them, in a read transaction
+     * evaluated with the quad indexes of the store. The result is written to a stream and cached like the result of a
+     * query against a single document, until any document is stored again.
+     *
+     * @param namedModels  the names of the stored documents, all of them if empty
+     * @param query        the query
+     * @param format       the content type of the result
+     * @param outputStream the stream the result is written to
+     * @throws IOException if one of the documents is not stored or the query is rejected
+     */
+    public void executeQuery(List<String> namedModels, String query, String format, OutputStream outputStream) throws IOException {
+        List<String> requestedModels = new ArrayList<>(new TreeSet<>(namedModels));
+        // the requested documents are part of the cached query, the whole store is covered by its version
+        String scopedQuery = String.join(" ", requestedModels) + "\n" + query;
+
+        long version = storeVersion.get();
+        byte[] result = sparqlService.getCachedResult(STORE_SCOPE, version, scopedQuery, format);
+        if (result != null) {
+            outputStream.write(result);
+            return;
+        }
+
+        CapturingOutputStream capturingOutputStream = new CapturingOutputStream(outputStream, sparqlService.getResultCacheMaxLength());
+        SparqlService.Permit permit = sparqlService.acquirePermit();
+        try {
+            dataset.begin(ReadWrite.READ);
+            try {
+                List<String> graphNames = getDocumentGraphNames();
+                if (!requestedModels.isEmpty()) {
+                    for (String requestedModel : requestedModels) {
+                        if (!graphNames.contains(requestedModel)) {
+                            throw new IOException("Repository " + requestedModel + " not stored!");
+                        }
+                    }
+                    graphNames = requestedModels;
+                }
+
+                sparqlService.writeQueryResult(dataset, graphNames, query, format, capturingOutputStream);
+            } finally {
+                dataset.end();
+            }
+        } finally {
+            permit.close();
+        }
+
+        result = capturingOutputStream.getCopy();
+        if (result != null) {
+            sparqlService.cacheResult(STORE_SCOPE, version, scopedQuery, format, result);
+        }
+    }
+
     public List<String[]> getStoredRepositories() {
         List<String[]> result = new ArrayList<>();
         dataset.begin(ReadWrite.READ);
@@ -65,6 +296,10 @@ public class StoreService {
 
         while (storedRepoIterator.hasNext()) {
             String repoName = storedRepoIterator.next();
+            if (repoName.startsWith(STATE_GRAPH_PREFIX)) {
+                continue;
+            }
+
             String[] parsedName = repoName.split("/");
 
             if (parsedName.length != 2) {
@@ -78,4 +313,81 @@ public class StoreService {
 
         return result;
     }
+
+    /**
+     * Writes the last processed commit and the versions of the files changed since the state was last stored, unless
+     * no commit was processed yet
+     *
+     * @param model the model holding the state
+     * @param state the generation state
+     */
+    private void writeGenerationState(Model model, GenerationState state) throws UnsupportedEncodingException {
+        if (state.getLastCommitSha() == null) {
+            return;
+        }
+
+        model.removeAll(REPOSITORY_STATE, LAST_COMMIT, null);
+        model.add(REPOSITORY_STATE, LAST_COMMIT, state.getLastCommitSha());
+
+        for (String filename : state.getChangedFiles()) {
+            Resource file = model.createResource(STATE_NS + "file-" + URLEncoder.encode(filename, "UTF-8"));
+            model.removeAll(file, VERSION, null);
+            model.add(file, PATH, filename);
+            model.add(file, VERSION, state.getFileVersions().get(filename));
+        }
+    }
+
+    /**
+     * Lists the names of the graphs holding provenance documents, leaving out the generation states. Must be called
+     * within a transaction.
+     *
+     * @return the names of the graphs
+     */
+    private List<String> getDocumentGraphNames() {
+        List<String> result = new ArrayList<>();
+
+        dataset.listNames().forEachRemaining(graphName -> {
+            if (!graphName.startsWith(STATE_GRAPH_PREFIX)) {
+                result.add(graphName);
+            }
+        });
+
+        return result;
+    }
+
+    private String getStateGraphName(String documentName) {
+        return STATE_GRAPH_PREFIX + documentName;
+    }
+
+    /**
+     * Stores a provenance document by batches of records. The first batch replaces the stored document unless the
+     * generation is incremental, the next ones are appended to it.
+     */
+    public class BatchWriter {
+
+        private final String documentName;
+
+        private final GenerationState state;
+
+        private boolean first = true;
+
+        private BatchWriter(String documentName, GenerationState state) {
+            this.documentName = documentName;
+            this.state = state;
+        }
+
+        /**
+         * Stores a batch of records
+         *
+         * @param batch the records in turtle format
+         * @throws IOException the io exception
+         */
+        public void write(InputStream batch) throws IOException {
+            Model model = ModelFactory.createDefaultModel();
+            RDFDataMgr.read(model, batch, Lang.TURTLE);
+
+            storeModel(documentName, model, state, first && !state.isIncremental());
+            first = false;
+        }
+    }
 }
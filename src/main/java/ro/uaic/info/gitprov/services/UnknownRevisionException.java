@@ -0,0 +1,15 @@
+package ro.uaic.info.gitprov.services;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the base or the head of the scope of a generation is not part of the history of the repository.
+ */
+public class UnknownRevisionException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnknownRevisionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,86 @@
+package ro.uaic.info.gitprov.services;
+
+import org.eclipse.egit.github.core.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the profiles of the Github users for a limited time, shared by the generations of all the repositories since
+ * the contributors of a repository usually contribute to others. The least recently used profiles are removed first
+ * once the size is reached.
+ */
+@Service
+public class UserCache {
+
+    /**
+     * The time a profile is kept, in milliseconds.
+     */
+    @Value("${gitprov.users.cache-ttl-ms:3600000}")
+    private long ttl;
+
+    /**
+     * The number of profiles kept.
+     */
+    @Value("${gitprov.users.cache-size:10000}")
+    private int size;
+
+    /**
+     * The profiles with the time they expire at, by login, from the least to the most recently used.
+     */
+    private final LinkedHashMap<String, CachedUser> users = new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+            return size() > UserCache.this.size;
+        }
+    };
+
+    /**
+     * Gets the profile of a user
+     *
+     * @param login the login of the user
+     * @return the profile, null if not kept or expired
+     */
+    public synchronized User get(String login) {
+        CachedUser cachedUser = users.get(login);
+        if (cachedUser == null) {
+            return null;
+        }
+
+        if (cachedUser.expiresAt < System.currentTimeMillis()) {
+            users.remove(login);
+            return null;
+        }
+
+        return cachedUser.user;
+    }
+
+    /**
+     * Keeps the profile of a user
+     *
+     * @param login the login of the user
+     * @param user  the profile
+     */
+    public synchronized void put(String login, User user) {
+        users.put(login, new CachedUser(user, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * A profile with the time it expires at.
+     */
+    private static class CachedUser {
+
+        private final User user;
+
+        private final long expiresAt;
+
+        private CachedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ro.uaic.info.gitprov.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes to a stream while keeping a copy of the written bytes, as long as they do not exceed a given size.
+ */
+public class CapturingOutputStream extends OutputStream {
+
+    private final OutputStream outputStream;
+
+    private final int maxSize;
+
+    /**
+     * The copy of the written bytes, null once they exceeded the maximum size.
+     */
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+    /**
+     * Instantiates a new Capturing output stream.
+     *
+     * @param outputStream the stream written to
+     * @param maxSize      the size from which the copy is dropped
+     */
+    public CapturingOutputStream(OutputStream outputStream, int maxSize) {
+        this.outputStream = outputStream;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        outputStream.write(b, off, len);
+
+        if (copy != null) {
+            if (copy.size() + len > maxSize) {
+                copy = null;
+            } else {
+                copy.write(b, off, len);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    /**
+     * Gets the copy of the written bytes
+     *
+     * @return the copy, null if the written bytes exceeded the maximum size
+     */
+    public byte[] getCopy() {
+        return copy == null ? null : copy.toByteArray();
+    }
+}
@@ -0,0 +1,102 @@
+package ro.uaic.info.gitprov.utils;
+
+import org.openprovenance.prov.interop.InteropFramework;
+import org.openprovenance.prov.model.Document;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a provenance notation document in several parts, as its statements are generated. Every part is written by
+ * the interop framework as a document of its own, then its document header and footer are dropped, except the header
+ * of the first part and a single footer written when the document is ended.
+ */
+public class ProvnStreamWriter {
+
+    /**
+     * The charset used to slice the written parts, which maps every byte to a char and back unchanged.
+     */
+    private static final Charset BYTES = StandardCharsets.ISO_8859_1;
+
+    private static final String DOCUMENT_FOOTER = "endDocument";
+
+    private final OutputStream outputStream;
+
+    private final InteropFramework interopFramework = new InteropFramework();
+
+    /**
+     * Whether the header of the document was written.
+     */
+    private boolean started;
+
+    /**
+     * Instantiates a new Provn stream writer.
+     *
+     * @param outputStream the stream the document is written to
+     */
+    public ProvnStreamWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Writes the statements of a part of the document and flushes them. The first part is written even if it has no
+     * statements, as it carries the document header.
+     *
+     * @param part the part of the document
+     * @throws IOException io exception
+     */
+    public void write(Document part) throws IOException {
+        if (started && part.getStatementOrBundle().isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        interopFramework.writeDocument(buffer, InteropFramework.ProvFormat.PROVN, part);
+        String text = new String(buffer.toByteArray(), BYTES);
+
+        int bodyStart = getBodyStart(text);
+        int bodyEnd = text.lastIndexOf(DOCUMENT_FOOTER);
+        if (bodyEnd < bodyStart) {
+            bodyEnd = text.length();
+        }
+
+        outputStream.write(text.substring(started ? bodyStart : 0, bodyEnd).getBytes(BYTES));
+        outputStream.flush();
+        started = true;
+    }
+
+    /**
+     * Ends the document
+     *
+     * @throws IOException io exception
+     */
+    public void end() throws IOException {
+        outputStream.write((DOCUMENT_FOOTER + "\n").getBytes(BYTES));
+        outputStream.flush();
+    }
+
+    /**
+     * Finds where the statements of a written document start, after the document keyword and the prefix declarations
+     *
+     * @param text the written document
+     * @return the index of the first statement
+     */
+    private int getBodyStart(String text) {
+        int position = 0;
+
+        while (position < text.length()) {
+            int lineEnd = text.indexOf('\n', position);
+            String line = (lineEnd < 0 ? text.substring(position) : text.substring(position, lineEnd)).trim();
+
+            if (!(line.isEmpty() || line.equals("document") || line.startsWith("prefix ") || line.startsWith("default "))) {
+                break;
+            }
+            position = lineEnd < 0 ? text.length() : lineEnd + 1;
+        }
+
+        return position;
+    }
+}
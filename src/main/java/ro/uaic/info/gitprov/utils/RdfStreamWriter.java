@@ -0,0 +1,98 @@
+package ro.uaic.info.gitprov.utils;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.openprovenance.prov.interop.InteropFramework;
+import org.openprovenance.prov.model.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a turtle or trig document in several parts, as its statements are generated. Every part is written in turtle
+ * by the interop framework, as the batches of the store are, then read back and written to the stream by blocks of
+ * triples, so the blank nodes of different parts are kept apart and the prefixes are declared once.
+ */
+public class RdfStreamWriter {
+
+    private final OutputStream outputStream;
+
+    private final StreamRDF stream;
+
+    private final InteropFramework interopFramework = new InteropFramework();
+
+    /**
+     * The prefixes declared so far.
+     */
+    private final Map<String, String> prefixes = new HashMap<>();
+
+    /**
+     * Instantiates a new RDF stream writer.
+     *
+     * @param outputStream the stream the document is written to
+     * @param format       the format, turtle or trig
+     */
+    public RdfStreamWriter(OutputStream outputStream, InteropFramework.ProvFormat format) {
+        this.outputStream = outputStream;
+        this.stream = StreamRDFWriter.getWriterStream(outputStream, format == InteropFramework.ProvFormat.TRIG ? RDFFormat.TRIG_BLOCKS : RDFFormat.TURTLE_BLOCKS);
+        stream.start();
+    }
+
+    /**
+     * Whether a format can be written in several parts
+     *
+     * @param format the format
+     * @return whether the format is turtle or trig
+     */
+    public static boolean supports(InteropFramework.ProvFormat format) {
+        return format == InteropFramework.ProvFormat.TURTLE || format == InteropFramework.ProvFormat.TRIG;
+    }
+
+    /**
+     * Writes the statements of a part of the document and flushes them
+     *
+     * @param part the part of the document
+     * @throws IOException io exception
+     */
+    public void write(Document part) throws IOException {
+        if (part.getStatementOrBundle().isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        interopFramework.writeDocument(buffer, InteropFramework.ProvFormat.TURTLE, part);
+        Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new ByteArrayInputStream(buffer.toByteArray()), Lang.TURTLE);
+
+        model.getNsPrefixMap().forEach((prefix, uri) -> {
+            if (!uri.equals(prefixes.get(prefix))) {
+                prefixes.put(prefix, uri);
+                stream.prefix(prefix, uri);
+            }
+        });
+
+        Graph graph = model.getGraph();
+        graph.find().forEachRemaining(stream::triple);
+        outputStream.flush();
+    }
+
+    /**
+     * Ends the document
+     *
+     * @throws IOException io exception
+     */
+    public void end() throws IOException {
+        stream.finish();
+        outputStream.flush();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.gitprov;
+
+import org.junit.Test;
+import ro.uaic.info.gitprov.models.FileVersionIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FileVersionIndexTests {
+
+	@Test
+	public void keepsTheLastVersionOfEveryFile() {
+		FileVersionIndex index = new FileVersionIndex();
+		Map<String, String> expected = new HashMap<>();
+
+		for (int i = 0; i < 1000; i++) {
+			String path = "src/File" + (i % 300) + ".java";
+			String sha = String.format("%040x", i * 7919L);
+			index.put(path, sha);
+			expected.put(path, sha);
+		}
+
+		assertEquals(expected.size(), index.size());
+		expected.forEach((path, sha) -> assertEquals(sha, index.get(path)));
+		assertNull(index.get("README.md"));
+		assertFalse(index.contains("README.md"));
+	}
+
+	@Test
+	public void givesIdsInTheOrderFilesAreAdded() {
+		FileVersionIndex index = new FileVersionIndex();
+		String sha = "0123456789abcdef0123456789abcdef01234567";
+
+		assertEquals(0, index.put("a", sha));
+		assertEquals(1, index.put("b", sha));
+		assertEquals(0, index.put("a", sha));
+		assertEquals("b", index.getPath(1));
+		assertEquals(sha, index.getSha(1));
+
+		index.clear();
+		assertEquals(0, index.size());
+		assertFalse(index.contains("a"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidShas() {
+		new FileVersionIndex().put("a", "not a sha");
+	}
+}
@@ -0,0 +1,433 @@
+package com.example.gitprov;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.RepositoryCommitCompare;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.GsonUtils;
+import ro.uaic.info.gitprov.models.HistoryScope;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * An in-process emulator of the parts of the Github API read by the application, serving repositories whose histories
+ * are given by {@link SyntheticCommitSource}: the repositories, their commits, page by page and one by one, the
+ * comparisons of their commits, their contributors, the repositories of their owners and the profiles of the users.
+ * The pages are linked as by Github, every response tells an unspent rate limit and is delayed by the configured
+ * latency. The paths are served under /api/v3 as well, as the Github client requests them on any host other than
+ * api.github.com, so the application is pointed at the emulator by setting gitprov.github.host to localhost,
+ * gitprov.github.port to its port and gitprov.github.scheme to http.
+ */
+public class GitHubApiEmulator implements Closeable {
+
+	private static final String API_PREFIX = "/api/v3";
+
+	private static final String DEFAULT_BRANCH = "master";
+
+	private static final int DEFAULT_PAGE_SIZE = 30;
+
+	private static final int MAX_PAGE_SIZE = 100;
+
+	/**
+	 * The number of requests allowed per token, high enough for a load not to spend it.
+	 */
+	public static final int RATE_LIMIT = 1000000;
+
+	private final Gson gson = GsonUtils.getGson();
+
+	private final HttpServer server;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	/**
+	 * The histories of the repositories, by owner/name.
+	 */
+	private final Map<String, SyntheticCommitSource> repositories = new ConcurrentHashMap<>();
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	/**
+	 * The number of requests served, by Authorization header, empty for the unauthenticated ones.
+	 */
+	private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+
+	private volatile long latencyMs;
+
+	/**
+	 * Starts an emulator on the loopback interface
+	 *
+	 * @param port the port, any free port if 0
+	 * @throws IOException if the port cannot be bound
+	 */
+	public GitHubApiEmulator(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Adds a repository with a synthetic history
+	 *
+	 * @param owner          the login of the owner
+	 * @param name           the name of the repository
+	 * @param commits        the number of commits
+	 * @param filesPerCommit the number of files changed by every commit
+	 * @param contributors   the number of contributors
+	 * @return this emulator
+	 */
+	public GitHubApiEmulator addRepository(String owner, String name, int commits, int filesPerCommit, int contributors) {
+		repositories.put(owner + "/" + name, new SyntheticCommitSource(commits, filesPerCommit, contributors));
+		return this;
+	}
+
+	/**
+	 * Sets the time every response is delayed by
+	 *
+	 * @param latencyMs the latency in milliseconds
+	 * @return this emulator
+	 */
+	public GitHubApiEmulator setLatencyMs(long latencyMs) {
+		this.latencyMs = latencyMs;
+		return this;
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Gets the number of requests served since the emulator started
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			requestCount.incrementAndGet();
+			String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+			requestCounts.computeIfAbsent(authorization == null ? "" : authorization, key -> new AtomicLong()).incrementAndGet();
+			if (latencyMs > 0) {
+				TimeUnit.MILLISECONDS.sleep(latencyMs);
+			}
+
+			String path = exchange.getRequestURI().getPath();
+			if (path.startsWith(API_PREFIX + "/")) {
+				path = path.substring(API_PREFIX.length());
+			}
+			String[] segments = path.replaceAll("^/+|/+$", "").split("/");
+			Map<String, String> params = getParams(exchange.getRequestURI().getRawQuery());
+
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				respondError(exchange, 405, "Method Not Allowed");
+			} else if (segments.length >= 3 && segments[0].equals("repos")) {
+				handleRepository(exchange, segments, params);
+			} else if (segments.length == 2 && segments[0].equals("users")) {
+				respond(exchange, SyntheticCommitSource.newUser(segments[1]));
+			} else if (segments.length == 3 && (segments[0].equals("users") || segments[0].equals("orgs")) && segments[2].equals("repos")) {
+				List<Repository> owned = repositories.keySet().stream()
+						.filter(key -> key.startsWith(segments[1] + "/"))
+						.sorted()
+						.map(this::newRepository)
+						.collect(Collectors.toList());
+				respondPage(exchange, params, owned.size(), owned::get);
+			} else {
+				respondError(exchange, 404, "Not Found");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void handleRepository(HttpExchange exchange, String[] segments, Map<String, String> params) throws IOException {
+		String key = segments[1] + "/" + segments[2];
+		SyntheticCommitSource source = repositories.get(key);
+
+		if (source == null) {
+			respondError(exchange, 404, "Not Found");
+		} else if (segments.length == 3) {
+			respond(exchange, newRepository(key));
+		} else if (segments.length == 4 && segments[3].equals("contributors")) {
+			List<?> contributors = source.getContributors();
+			respondPage(exchange, params, contributors.size(), contributors::get);
+		} else if (segments.length == 4 && segments[3].equals("commits")) {
+			listCommits(exchange, source, params);
+		} else if (segments.length == 5 && segments[3].equals("compare") && segments[4].contains("...")) {
+			compareCommits(exchange, source, segments[4], params);
+		} else if (segments.length == 5 && segments[3].equals("commits")) {
+			int commit = resolve(source, segments[4]);
+			if (commit < 0) {
+				respondError(exchange, 422, "No commit found for SHA: " + segments[4]);
+			} else {
+				respond(exchange, source.getRepositoryCommit(commit));
+			}
+		} else {
+			respondError(exchange, 404, "Not Found");
+		}
+	}
+
+	/**
+	 * Lists the commits reachable from the sha parameter, from the newest, within the time window of the since and
+	 * until parameters and changing the files under the path parameter. As by Github, the listed commits carry no
+	 * files.
+	 */
+	private void listCommits(HttpExchange exchange, SyntheticCommitSource source, Map<String, String> params) throws IOException {
+		int head = params.containsKey("sha") ? resolve(source, params.get("sha")) : source.getCommitCount() - 1;
+		if (params.containsKey("sha") && head < 0) {
+			respondError(exchange, 404, "Not Found");
+			return;
+		}
+
+		int oldest;
+		int newest;
+		try {
+			oldest = params.containsKey("since") ? (int) Math.max(0, -Math.floorDiv(-getOffset(params.get("since")), 60000L)) : 0;
+			newest = params.containsKey("until") ? (int) Math.min(head, Math.floorDiv(getOffset(params.get("until")), 60000L)) : head;
+		} catch (DateTimeParseException e) {
+			respondError(exchange, 422, "Validation Failed");
+			return;
+		}
+
+		HistoryScope scope = new HistoryScope();
+		scope.setPath(params.get("path"));
+
+		IntFunction<Object> listed = index -> {
+			RepositoryCommit commit = source.getRepositoryCommit(index);
+			commit.setFiles(null);
+			return commit;
+		};
+
+		if (scope.getPath() == null) {
+			respondPage(exchange, params, Math.max(0, newest - oldest + 1), i -> listed.apply(newest - i));
+			return;
+		}
+
+		List<Integer> matching = new ArrayList<>();
+		for (int commit = newest; commit >= oldest; commit--) {
+			if (source.getRepositoryCommit(commit).getFiles().stream().anyMatch(file -> scope.covers(file.getFilename()))) {
+				matching.add(commit);
+			}
+		}
+		respondPage(exchange, params, matching.size(), i -> listed.apply(matching.get(i)));
+	}
+
+	/**
+	 * Compares two commits, written as base...head, listing the commits after the base up to the head from the oldest,
+	 * page by page. As the histories are linear, a base after the head is behind it and no commits are listed.
+	 */
+	private void compareCommits(HttpExchange exchange, SyntheticCommitSource source, String range, Map<String, String> params) throws IOException {
+		int base = resolve(source, range.substring(0, range.indexOf("...")));
+		int head = resolve(source, range.substring(range.indexOf("...") + 3));
+		if (base < 0 || head < 0) {
+			respondError(exchange, 404, "Not Found");
+			return;
+		}
+
+		int ahead = Math.max(0, head - base);
+		String status = base == head ? "identical" : base < head ? "ahead" : "behind";
+		respondPage(exchange, params, ahead, i -> {
+			RepositoryCommit commit = source.getRepositoryCommit(base + 1 + i);
+			commit.setFiles(null);
+			return commit;
+		}, page -> new RepositoryCommitCompare()
+				.setStatus(status)
+				.setAheadBy(ahead)
+				.setBehindBy(Math.max(0, base - head))
+				.setTotalCommits(ahead)
+				.setCommits(page.stream().map(RepositoryCommit.class::cast).collect(Collectors.toList())));
+	}
+
+	/**
+	 * Gets the time from the first commit of the synthetic histories to a date
+	 *
+	 * @param date the date, in ISO 8601 format
+	 * @return the time in milliseconds
+	 */
+	private static long getOffset(String date) {
+		return Instant.parse(date).toEpochMilli() - SyntheticCommitSource.getDate(0).getTime();
+	}
+
+	private static int resolve(SyntheticCommitSource source, String ref) {
+		return DEFAULT_BRANCH.equals(ref) ? source.getCommitCount() - 1 : source.indexOf(ref);
+	}
+
+	private Repository newRepository(String key) {
+		String owner = key.substring(0, key.indexOf('/'));
+		String name = key.substring(key.indexOf('/') + 1);
+
+		return new Repository()
+				.setId(Math.abs((long) key.hashCode()))
+				.setOwner(new User().setLogin(owner).setType("User"))
+				.setName(name)
+				.setMasterBranch(DEFAULT_BRANCH)
+				.setHtmlUrl("https://github.com/" + key)
+				.setCreatedAt(SyntheticCommitSource.getDate(0));
+	}
+
+	/**
+	 * Responds with a page of a list, linked to the next, previous, first and last pages as by Github
+	 *
+	 * @param exchange the exchange
+	 * @param params   the parameters of the request, holding the page and its size
+	 * @param size     the size of the list
+	 * @param items    the items of the list, by index
+	 * @throws IOException io exception
+	 */
+	private void respondPage(HttpExchange exchange, Map<String, String> params, int size, IntFunction<?> items) throws IOException {
+		respondPage(exchange, params, size, items, page -> page);
+	}
+
+	/**
+	 * Responds with a page of a list held by the body of the response, linked as by Github
+	 *
+	 * @param exchange the exchange
+	 * @param params   the parameters of the request, holding the page and its size
+	 * @param size     the size of the list
+	 * @param items    the items of the list, by index
+	 * @param body     the body of the response holding the items of the page
+	 * @throws IOException io exception
+	 */
+	private void respondPage(HttpExchange exchange, Map<String, String> params, int size, IntFunction<?> items, Function<List<Object>, Object> body) throws IOException {
+		int pageSize;
+		int page;
+		try {
+			pageSize = Math.min(MAX_PAGE_SIZE, Math.max(1, Integer.parseInt(params.getOrDefault("per_page", String.valueOf(DEFAULT_PAGE_SIZE)))));
+			page = Math.max(1, Integer.parseInt(params.getOrDefault("page", "1")));
+		} catch (NumberFormatException e) {
+			respondError(exchange, 422, "Validation Failed");
+			return;
+		}
+
+		List<Object> pageItems = new ArrayList<>();
+		for (int i = (page - 1) * pageSize; i < Math.min(size, page * pageSize); i++) {
+			pageItems.add(items.apply(i));
+		}
+
+		int lastPage = Math.max(1, (size + pageSize - 1) / pageSize);
+		List<String> links = new ArrayList<>();
+		if (page < lastPage) {
+			links.add(getLink(exchange, params, page + 1, "next"));
+			links.add(getLink(exchange, params, lastPage, "last"));
+		}
+		if (page > 1) {
+			links.add(getLink(exchange, params, 1, "first"));
+			links.add(getLink(exchange, params, Math.min(page - 1, lastPage), "prev"));
+		}
+		if (!links.isEmpty()) {
+			exchange.getResponseHeaders().set("Link", String.join(", ", links));
+		}
+
+		respond(exchange, 200, body.apply(pageItems));
+	}
+
+	private static String getLink(HttpExchange exchange, Map<String, String> params, int page, String rel) {
+		Map<String, String> linkParams = new LinkedHashMap<>(params);
+		linkParams.put("page", String.valueOf(page));
+
+		StringBuilder uri = new StringBuilder("http://").append(exchange.getRequestHeaders().getFirst("Host")).append(exchange.getRequestURI().getRawPath());
+		char separator = '?';
+		for (Map.Entry<String, String> param : linkParams.entrySet()) {
+			uri.append(separator).append(encode(param.getKey())).append('=').append(encode(param.getValue()));
+			separator = '&';
+		}
+
+		return "<" + uri + ">; rel=\"" + rel + "\"";
+	}
+
+	private void respond(HttpExchange exchange, Object body) throws IOException {
+		respond(exchange, 200, body);
+	}
+
+	private void respondError(HttpExchange exchange, int status, String message) throws IOException {
+		respond(exchange, status, Collections.singletonMap("message", message));
+	}
+
+	/**
+	 * Gets the number of requests left to the token of a request
+	 *
+	 * @param exchange the exchange of the request
+	 * @return the number of requests
+	 */
+	private long getRemainingRequests(HttpExchange exchange) {
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		AtomicLong count = requestCounts.get(authorization == null ? "" : authorization);
+		return Math.max(0, RATE_LIMIT - (count == null ? 0 : count.get()));
+	}
+
+	private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+		byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(RATE_LIMIT));
+		exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(getRemainingRequests(exchange)));
+		exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600));
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(bytes);
+		}
+	}
+
+	private static Map<String, String> getParams(String query) {
+		Map<String, String> result = new LinkedHashMap<>();
+		if (query == null || query.isEmpty()) {
+			return result;
+		}
+
+		for (String param : query.split("&")) {
+			int separator = param.indexOf('=');
+			if (separator > 0) {
+				result.put(decode(param.substring(0, separator)), decode(param.substring(separator + 1)));
+			}
+		}
+		return result;
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package com.example.gitprov;
+
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.service.CommitService;
+import org.eclipse.egit.github.core.service.RepositoryService;
+import org.eclipse.egit.github.core.service.UserService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ro.uaic.info.gitprov.models.HistoryScope;
+import ro.uaic.info.gitprov.services.CommitFilesReader;
+import ro.uaic.info.gitprov.services.CommitHistory;
+import ro.uaic.info.gitprov.services.GitHubRequestCounter;
+import ro.uaic.info.gitprov.services.GithubCommitSource;
+import ro.uaic.info.gitprov.services.RateLimitedGitHubClient;
+import ro.uaic.info.gitprov.services.UserCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class GitHubApiEmulatorTests {
+
+	private static final int COMMITS = 250;
+
+	private static final int FILES_PER_COMMIT = 3;
+
+	private static final int CONTRIBUTORS = 5;
+
+	private GitHubApiEmulator emulator;
+
+	private ExecutorService executorService;
+
+	private GithubCommitSource commitSource;
+
+	@Before
+	public void startEmulator() throws Exception {
+		emulator = new GitHubApiEmulator(0).addRepository("octo", "synthetic", COMMITS, FILES_PER_COMMIT, CONTRIBUTORS);
+		executorService = Executors.newFixedThreadPool(4);
+
+		RateLimitedGitHubClient client = new RateLimitedGitHubClient("localhost", emulator.getPort(), "http", Collections.emptyList(), 0, 1, 0);
+		UserCache userCache = new UserCache();
+		ReflectionTestUtils.setField(userCache, "ttl", 60000L);
+		ReflectionTestUtils.setField(userCache, "size", 100);
+
+		RepositoryService repositoryService = new RepositoryService(client);
+		Repository repository = repositoryService.getRepository("octo", "synthetic");
+		commitSource = new GithubCommitSource(repository, new CommitService(client), repositoryService, new UserService(client), userCache, executorService, 8);
+	}
+
+	@After
+	public void stopEmulator() {
+		executorService.shutdownNow();
+		emulator.close();
+	}
+
+	@Test
+	public void servesTheHistoryPageByPageToTheGithubClient() throws Exception {
+		assertEquals(SyntheticCommitSource.getSha(COMMITS - 1), commitSource.getHeadSha());
+		assertEquals(CONTRIBUTORS, commitSource.getContributors().size());
+		assertEquals("contributor-1@example.com", commitSource.getUser("contributor-1").getEmail());
+
+		List<RepositoryCommit> commits = readAll(commitSource.getCommitsSince(null));
+
+		assertEquals(COMMITS, commits.size());
+		for (int i = 0; i < COMMITS; i++) {
+			assertEquals(SyntheticCommitSource.getSha(i), commits.get(i).getSha());
+			assertEquals(FILES_PER_COMMIT, commits.get(i).getFiles().size());
+		}
+		assertEquals("modified", commits.get(COMMITS - 1).getFiles().get(0).getStatus());
+	}
+
+	@Test
+	public void servesOnlyTheCommitsWithinTheScope() throws Exception {
+		List<RepositoryCommit> commits = readAll(commitSource.getCommitsSince(SyntheticCommitSource.getSha(199)));
+
+		assertEquals(50, commits.size());
+		assertEquals(SyntheticCommitSource.getSha(200), commits.get(0).getSha());
+
+		HistoryScope scope = new HistoryScope();
+		scope.setSince(SyntheticCommitSource.getDate(10));
+		scope.setUntil(SyntheticCommitSource.getDate(19));
+		commits = readAll(commitSource.getCommits(scope));
+
+		assertEquals(10, commits.size());
+		assertEquals(SyntheticCommitSource.getSha(10), commits.get(0).getSha());
+		assertEquals(SyntheticCommitSource.getSha(19), commits.get(9).getSha());
+	}
+
+	@Test
+	public void servesOnlyTheCommitsChangingThePath() throws Exception {
+		SyntheticCommitSource expected = new SyntheticCommitSource(COMMITS, FILES_PER_COMMIT, CONTRIBUTORS);
+		HistoryScope scope = new HistoryScope();
+		scope.setPath("src/module3");
+
+		List<String> expectedShas = new ArrayList<>();
+		for (int i = 0; i < COMMITS; i++) {
+			if (expected.getRepositoryCommit(i).getFiles().stream().anyMatch(file -> scope.covers(file.getFilename()))) {
+				expectedShas.add(SyntheticCommitSource.getSha(i));
+			}
+		}
+
+		List<String> shas = new ArrayList<>();
+		readAll(commitSource.getCommits(scope)).forEach(commit -> shas.add(commit.getSha()));
+
+		assertFalse(expectedShas.isEmpty());
+		assertEquals(expectedShas, shas);
+		assertNull(commitSource.getCommitsSince(SyntheticCommitSource.getSha(COMMITS)));
+	}
+
+	@Test
+	public void keepsTheRateLimitOfEveryToken() throws Exception {
+		RateLimitedGitHubClient client = new RateLimitedGitHubClient("localhost", emulator.getPort(), "http", Arrays.asList("first", "second"), 0, 1, 0);
+		UserService userService = new UserService(client);
+		long requestsBefore = emulator.getRequestCount();
+
+		for (int i = 0; i < 5; i++) {
+			userService.getUser("contributor-" + i);
+		}
+
+		assertEquals(2 * GitHubApiEmulator.RATE_LIMIT, client.getRequestLimit());
+		assertEquals(2 * GitHubApiEmulator.RATE_LIMIT - (emulator.getRequestCount() - requestsBefore), client.getRemainingRequests());
+	}
+
+	@Test
+	public void countsTheRequestsOfThePrefetchingThreads() throws Exception {
+		GitHubRequestCounter counter = new GitHubRequestCounter();
+		List<RepositoryCommit> commits = new ArrayList<>();
+		long requestsBefore = emulator.getRequestCount();
+
+		counter.run(() -> {
+			try {
+				commits.addAll(readAll(commitSource.getCommitsSince(SyntheticCommitSource.getSha(199))));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		commitSource.getHeadSha();
+
+		assertEquals(50, commits.size());
+		assertEquals(emulator.getRequestCount() - requestsBefore - 1, counter.getCount());
+		assertTrue(counter.getCount() > commits.size());
+	}
+
+	private List<RepositoryCommit> readAll(CommitHistory history) throws Exception {
+		List<RepositoryCommit> result = new ArrayList<>();
+		try (CommitFilesReader reader = commitSource.readFiles(history)) {
+			while (reader.hasNext()) {
+				result.add(reader.next());
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,251 @@
+package com.example.gitprov;
+
+import org.eclipse.egit.github.core.Commit;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.service.CommitService;
+import org.eclipse.egit.github.core.service.RepositoryService;
+import org.eclipse.egit.github.core.service.UserService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import ro.uaic.info.gitprov.models.GenerationState;
+import ro.uaic.info.gitprov.models.HistoryScope;
+import ro.uaic.info.gitprov.services.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class GithubCommitSourceTests {
+
+	private static final Repository REPOSITORY = new Repository().setName("branched").setOwner(new User().setLogin("octo"));
+
+	private static final long START = 1500000000000L;
+
+	private static final long MINUTE = 60000L;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File directory;
+
+	private ExecutorService executorService;
+
+	private LocalCommitSource localCommitSource;
+
+	private String first;
+
+	private String firstOnSide;
+
+	private String secondOnSide;
+
+	private String beforeMerge;
+
+	private String merge;
+
+	private String afterMerge;
+
+	/**
+	 * Creates a repository whose side branch starts from the first commit and is not merged yet:
+	 * first, then firstOnSide and secondOnSide on the side branch, then beforeMerge on master, in this order in time.
+	 */
+	@Before
+	public void createRepository() throws Exception {
+		directory = temporaryFolder.newFolder("repository");
+		executorService = Executors.newFixedThreadPool(2);
+
+		try (Git git = Git.init().setDirectory(directory).call()) {
+			first = commit(git, "main.txt", "first\n", 0);
+
+			git.checkout().setCreateBranch(true).setName("side").call();
+			firstOnSide = commit(git, "side.txt", "first on side\n", 10);
+			secondOnSide = commit(git, "side.txt", "second on side\n", 20);
+
+			git.checkout().setName("master").call();
+			beforeMerge = commit(git, "main.txt", "before merge\n", 30);
+		}
+
+		localCommitSource = new LocalCommitSource(directory);
+	}
+
+	@After
+	public void closeSources() {
+		executorService.shutdownNow();
+		localCommitSource.close();
+	}
+
+	@Test
+	public void readsTheCommitsOfABranchMergedAfterTheLastKnownOne() throws Exception {
+		mergeSideBranch();
+
+		List<RepositoryCommit> commits = readAll(newGithubCommitSource().getCommitsSince(beforeMerge));
+
+		assertEquals(new HashSet<>(Arrays.asList(firstOnSide, secondOnSide, merge, afterMerge)), getShas(commits));
+		assertParentsFirst(commits);
+		assertEquals(afterMerge, commits.get(commits.size() - 1).getSha());
+		assertEquals(1, commits.get(0).getFiles().size());
+
+		HistoryScope scope = new HistoryScope();
+		scope.setBase(first);
+		List<RepositoryCommit> paged = readAll(GithubCommitHistory.open(new LocalGitHubClient(localCommitSource), REPOSITORY, scope, 2));
+		assertEquals(new HashSet<>(Arrays.asList(firstOnSide, secondOnSide, beforeMerge, merge, afterMerge)), getShas(paged));
+		assertParentsFirst(paged);
+
+		assertNull(newGithubCommitSource().getCommitsSince(firstOnSide.replaceAll(".", "0")));
+	}
+
+	@Test
+	public void generatesTheProvenanceOfABranchMergedAfterTheLastGeneration() throws Exception {
+		ProvenanceService provenanceService = new ProvenanceService();
+		ReflectionTestUtils.setField(provenanceService, "commitSourceFactory", new CommitSourceFactory() {
+			@Override
+			public CommitSource getCommitSource(Repository repository) {
+				return newGithubCommitSource();
+			}
+		});
+
+		GenerationState state = new GenerationState();
+		String document = provenanceService.repositoryToDocument(REPOSITORY, "http://localhost/repos/owner/octo/branched#", "text/provenance-notation", state);
+		assertTrue(hasActivity(document, beforeMerge));
+		assertFalse(hasActivity(document, firstOnSide));
+		assertEquals(beforeMerge, state.getLastCommitSha());
+
+		mergeSideBranch();
+		document = provenanceService.repositoryToDocument(REPOSITORY, "http://localhost/repos/owner/octo/branched#", "text/provenance-notation", state);
+
+		for (String sha : Arrays.asList(firstOnSide, secondOnSide, merge, afterMerge)) {
+			assertTrue(sha, hasActivity(document, sha));
+		}
+		assertFalse(hasActivity(document, beforeMerge));
+		assertEquals(afterMerge, state.getLastCommitSha());
+		assertNull(provenanceService.repositoryToDocument(REPOSITORY, "http://localhost/repos/owner/octo/branched#", "text/provenance-notation", state));
+	}
+
+	@Test
+	public void readsTheSameRangesAsTheLocalRepository() throws Exception {
+		mergeSideBranch();
+		GithubCommitSource githubCommitSource = newGithubCommitSource();
+
+		List<String> ranges = Arrays.asList(beforeMerge + ".." + afterMerge, first + ".." + afterMerge, beforeMerge + ".." + merge,
+				firstOnSide + ".." + secondOnSide, afterMerge + ".." + afterMerge, first + "..side", firstOnSide + ".." + beforeMerge,
+				afterMerge + ".." + first, first.replaceAll(".", "0") + ".." + afterMerge);
+		for (String range : ranges) {
+			HistoryScope scope = new HistoryScope();
+			scope.setRange(range);
+			assertSameCommits(range, localCommitSource.getCommits(scope), githubCommitSource.getCommits(scope));
+
+			scope.setSince(new Date(START + 15 * MINUTE));
+			scope.setUntil(new Date(START + 45 * MINUTE));
+			assertSameCommits(range + " from 15 to 45", localCommitSource.getCommits(scope), githubCommitSource.getCommits(scope));
+		}
+
+		HistoryScope scope = new HistoryScope();
+		scope.setRange(beforeMerge + ".." + afterMerge);
+		assertEquals(4, githubCommitSource.getCommits(scope).size());
+		scope.setRange(firstOnSide + ".." + beforeMerge);
+		assertNull(githubCommitSource.getCommits(scope));
+	}
+
+	@Test
+	public void refusesRangesOfMoreCommitsThanMayBeCompared() throws Exception {
+		mergeSideBranch();
+
+		HistoryScope scope = new HistoryScope();
+		scope.setRange(beforeMerge + ".." + afterMerge);
+		assertEquals(4, GithubCommitHistory.open(new LocalGitHubClient(localCommitSource), REPOSITORY, scope, 2, 4).size());
+
+		scope.setRange(first + ".." + afterMerge);
+		try {
+			GithubCommitHistory.open(new LocalGitHubClient(localCommitSource), REPOSITORY, scope, 2, 4);
+			fail("The range of 5 commits was compared");
+		} catch (RangeTooLargeException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("5 commits"));
+		}
+	}
+
+	/**
+	 * Merges the side branch into master as the merge commit, then adds afterMerge on master
+	 */
+	private void mergeSideBranch() throws Exception {
+		try (Git git = Git.open(directory)) {
+			git.merge().include(git.getRepository().resolve("side")).setCommit(false).call();
+			merge = git.commit().setMessage("Merge side").setAuthor(getIdent(40)).setCommitter(getIdent(40)).call().getName();
+			afterMerge = commit(git, "main.txt", "after merge\n", 50);
+		}
+	}
+
+	private GithubCommitSource newGithubCommitSource() {
+		LocalGitHubClient client = new LocalGitHubClient(localCommitSource);
+		UserCache userCache = new UserCache();
+		ReflectionTestUtils.setField(userCache, "ttl", 60000L);
+		ReflectionTestUtils.setField(userCache, "size", 100);
+
+		return new GithubCommitSource(REPOSITORY, new CommitService(client), new RepositoryService(client), new UserService(client), userCache, executorService, 4);
+	}
+
+	private List<RepositoryCommit> readAll(CommitHistory history) throws Exception {
+		List<RepositoryCommit> result = new ArrayList<>();
+		try (CommitFilesReader reader = localCommitSource.readFiles(history)) {
+			while (reader.hasNext()) {
+				result.add(reader.next());
+			}
+		}
+		return result;
+	}
+
+	private static Set<String> getShas(List<RepositoryCommit> commits) {
+		Set<String> result = new HashSet<>();
+		commits.forEach(commit -> result.add(commit.getSha()));
+		return result;
+	}
+
+	private void assertSameCommits(String message, CommitHistory expected, CommitHistory actual) throws Exception {
+		if (expected == null) {
+			assertNull(message, actual);
+			return;
+		}
+		assertNotNull(message, actual);
+
+		List<RepositoryCommit> commits = readAll(actual);
+		assertEquals(message, getShas(readAll(expected)), getShas(commits));
+		assertParentsFirst(commits);
+	}
+
+	private static void assertParentsFirst(List<RepositoryCommit> commits) {
+		Set<String> read = new HashSet<>();
+		Set<String> shas = getShas(commits);
+		for (RepositoryCommit commit : commits) {
+			for (Commit parent : commit.getParents()) {
+				assertTrue(commit.getSha() + " before its parent " + parent.getSha(), !shas.contains(parent.getSha()) || read.contains(parent.getSha()));
+			}
+			read.add(commit.getSha());
+		}
+	}
+
+	private static boolean hasActivity(String document, String sha) {
+		return Pattern.compile("activity\\([^,)]*commit-" + sha + "[,)]").matcher(document).find();
+	}
+
+	private String commit(Git git, String path, String content, int minutes) throws Exception {
+		Files.write(new File(directory, path).toPath(), content.getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern(path).call();
+		return git.commit().setMessage("Change " + path).setAuthor(getIdent(minutes)).setCommitter(getIdent(minutes)).call().getName();
+	}
+
+	private static PersonIdent getIdent(int minutes) {
+		return new PersonIdent("alice", "alice@example.com", new Date(START + minutes * MINUTE), TimeZone.getTimeZone("UTC"));
+	}
+}
@@ -0,0 +1,329 @@
+package com.example.gitprov;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ro.uaic.info.gitprov.GitProvApplication;
+import ro.uaic.info.gitprov.models.IngestionJob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Puts the application under load against the {@link GitHubApiEmulator}, so no Github quota is spent. The emulator
+ * serves synthetic repositories owned by "load", the application is started in-process and pointed at it, every
+ * repository is stored once, then workers request at the same time the provenance documents of /repos, the stored
+ * documents of /store, new ingestions through /store and queries through /sparql, picked at random by the weights of
+ * the mix. The throughput and the latency percentiles of every kind of request are reported at the end. With
+ * --target, an application already running at that address is loaded instead, its repositories being the ones
+ * named by --owner and --repositories.
+ * <p>
+ * The options, given as --name=value: target, owner, repositories, commits, files-per-commit, contributors,
+ * latency-ms, threads, warmup-s, duration-s and mix, the latter as repos:4,store:2,ingest:1,sparql:3.
+ */
+public class LoadDriver {
+
+	private static final String OWNER = "load";
+
+	private static final String PREFIXES = "PREFIX prov: <http://www.w3.org/ns/prov#>\n";
+
+	private static final String[] QUERIES = {
+			PREFIXES + "SELECT ?agent WHERE { ?agent a prov:Agent }",
+			PREFIXES + "SELECT (COUNT(?activity) AS ?count) WHERE { ?activity a prov:Activity }",
+			PREFIXES + "SELECT ?entity ?source WHERE { ?entity prov:qualifiedDerivation ?derivation . ?derivation prov:entity ?source } LIMIT 100"
+	};
+
+	private final Map<String, String> options = new HashMap<>();
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final Map<String, Integer> mix = new LinkedHashMap<>();
+
+	private String baseUrl;
+
+	private String owner;
+
+	private int repositories;
+
+	public static void main(String[] args) throws Exception {
+		new LoadDriver(args).run();
+	}
+
+	private LoadDriver(String[] args) {
+		for (String arg : args) {
+			if (!arg.startsWith("--") || !arg.contains("=")) {
+				throw new IllegalArgumentException("Invalid option " + arg + ", expected --name=value");
+			}
+			options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+		}
+
+		for (String weight : getOption("mix", "repos:4,store:2,ingest:1,sparql:3").split(",")) {
+			String[] parts = weight.split(":");
+			mix.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+		}
+		if (!Arrays.asList("repos", "store", "ingest", "sparql").containsAll(mix.keySet())) {
+			throw new IllegalArgumentException("Invalid mix " + mix + ", expected weights of repos, store, ingest and sparql");
+		}
+
+		owner = getOption("owner", OWNER);
+		repositories = Integer.parseInt(getOption("repositories", "4"));
+	}
+
+	private void run() throws Exception {
+		if (options.containsKey("target")) {
+			baseUrl = options.get("target").replaceAll("/+$", "");
+			load(null);
+			return;
+		}
+
+		try (GitHubApiEmulator emulator = new GitHubApiEmulator(0)) {
+			emulator.setLatencyMs(Long.parseLong(getOption("latency-ms", "20")));
+			for (int i = 0; i < repositories; i++) {
+				emulator.addRepository(owner, getRepositoryName(i), Integer.parseInt(getOption("commits", "500")),
+						Integer.parseInt(getOption("files-per-commit", "5")), Integer.parseInt(getOption("contributors", "20")));
+			}
+
+			String directory = Files.createTempDirectory("gitprov-load").toString();
+			try (ConfigurableApplicationContext context = SpringApplication.run(GitProvApplication.class,
+					"--server.port=0",
+					"--gitprov.github.host=localhost",
+					"--gitprov.github.port=" + emulator.getPort(),
+					"--gitprov.github.scheme=http",
+					"--gitprov.github.requests-per-second=0",
+					"--gitprov.github.cache.size=0",
+					"--gitprov.jobs.directory=" + directory + "/jobs",
+					"--gitprov.cache.directory=" + directory + "/cache")) {
+				baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+				load(emulator);
+			}
+		}
+	}
+
+	private void load(GitHubApiEmulator emulator) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < repositories; i++) {
+			ingest(getRepositoryName(i));
+		}
+		System.out.printf("Stored %d repositories in %.1fs%n", repositories, (System.nanoTime() - start) / 1e9);
+
+		run(Integer.parseInt(getOption("warmup-s", "10")), null);
+
+		Map<String, Stats> stats = new TreeMap<>();
+		mix.keySet().forEach(operation -> stats.put(operation, new Stats()));
+		long requestsBefore = emulator == null ? 0 : emulator.getRequestCount();
+		int duration = Integer.parseInt(getOption("duration-s", "60"));
+		run(duration, stats);
+
+		System.out.printf("%-8s %9s %7s %9s %9s %9s %9s %9s%n", "", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+		Stats total = new Stats();
+		stats.forEach((operation, operationStats) -> {
+			operationStats.print(operation, duration);
+			total.addAll(operationStats);
+		});
+		total.print("total", duration);
+
+		if (emulator != null) {
+			System.out.printf("Github API requests served by the emulator: %d%n", emulator.getRequestCount() - requestsBefore);
+		}
+	}
+
+	/**
+	 * Makes requests from every worker for a given time
+	 *
+	 * @param seconds the time
+	 * @param stats   the statistics of every kind of request, null if not recorded
+	 * @throws Exception if a worker was interrupted
+	 */
+	private void run(int seconds, Map<String, Stats> stats) throws Exception {
+		int threads = Integer.parseInt(getOption("threads", "16"));
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				workers.add(executorService.submit(() -> {
+					Random random = ThreadLocalRandom.current();
+					while (System.nanoTime() < end) {
+						String operation = pick(random.nextInt(totalWeight));
+						String name = getRepositoryName(random.nextInt(repositories));
+
+						long requestStart = System.nanoTime();
+						boolean ok;
+						try {
+							ok = request(operation, name, random);
+						} catch (IOException e) {
+							ok = false;
+						}
+						if (stats != null) {
+							stats.get(operation).add(System.nanoTime() - requestStart, ok);
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	private String pick(int weight) {
+		for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+			weight -= entry.getValue();
+			if (weight < 0) {
+				return entry.getKey();
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	private boolean request(String operation, String name, Random random) throws IOException {
+		String repository = "/owner/" + owner + "/" + name;
+
+		switch (operation) {
+			case "repos":
+				return send("GET", "/repos" + repository, "text/provenance-notation", null).status == 200;
+			case "store":
+				return send("GET", "/store" + repository, "application/x-turtle", null).status == 200;
+			case "ingest":
+				return ingest(name);
+			default:
+				return send("POST", "/sparql" + repository, "application/json", QUERIES[random.nextInt(QUERIES.length)]).status == 200;
+		}
+	}
+
+	/**
+	 * Stores the provenance of a repository, waiting for the job to finish
+	 *
+	 * @param name the name of the repository
+	 * @return whether the job completed
+	 * @throws IOException io exception
+	 */
+	private boolean ingest(String name) throws IOException {
+		Response response = send("POST", "/store/owner/" + owner + "/" + name, "application/json", null);
+		if (response.status != 202) {
+			return false;
+		}
+
+		IngestionJob job = objectMapper.readValue(response.body, IngestionJob.class);
+		while (!job.isFinished()) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+
+			response = send("GET", "/store/jobs/" + job.getId(), "application/json", null);
+			if (response.status != 200) {
+				return false;
+			}
+			job = objectMapper.readValue(response.body, IngestionJob.class);
+		}
+
+		return job.getPhase() == IngestionJob.Phase.COMPLETED;
+	}
+
+	private Response send(String method, String path, String accept, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setRequestProperty("Accept", accept);
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+			try (OutputStream outputStream = connection.getOutputStream()) {
+				outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		int status = connection.getResponseCode();
+		InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		if (inputStream != null) {
+			try (InputStream stream = inputStream) {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = stream.read(buffer)) != -1) {
+					result.write(buffer, 0, read);
+				}
+			}
+		}
+
+		return new Response(status, result.toByteArray());
+	}
+
+	private String getOption(String name, String defaultValue) {
+		return options.getOrDefault(name, defaultValue);
+	}
+
+	private static String getRepositoryName(int repository) {
+		return "repository-" + repository;
+	}
+
+	private static class Response {
+
+		private final int status;
+
+		private final byte[] body;
+
+		private Response(int status, byte[] body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * The latencies of a kind of request and the number of failed ones.
+	 */
+	private static class Stats {
+
+		private final List<Long> latencies = new ArrayList<>();
+
+		private int errors;
+
+		private synchronized void add(long latencyNanos, boolean ok) {
+			latencies.add(latencyNanos);
+			if (!ok) {
+				errors++;
+			}
+		}
+
+		private synchronized void addAll(Stats stats) {
+			latencies.addAll(stats.latencies);
+			errors += stats.errors;
+		}
+
+		private synchronized void print(String operation, int seconds) {
+			long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+			System.out.printf("%-8s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", operation, sorted.length, errors, sorted.length / (double) seconds,
+					percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99), percentile(sorted, 1));
+		}
+
+		/**
+		 * Gets a percentile of the latencies, by the nearest rank
+		 *
+		 * @param sorted   the latencies in nanoseconds, sorted
+		 * @param fraction the fraction of the latencies at or under the percentile
+		 * @return the percentile in milliseconds, 0 if there are no latencies
+		 */
+		private static double percentile(long[] sorted, double fraction) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int rank = (int) Math.ceil(fraction * sorted.length);
+			return sorted[Math.max(0, rank - 1)] / 1e6;
+		}
+	}
+}
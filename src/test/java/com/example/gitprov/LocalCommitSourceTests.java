@@ -0,0 +1,179 @@
+package com.example.gitprov;
+
+import org.eclipse.egit.github.core.CommitFile;
+import org.eclipse.egit.github.core.Contributor;
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ro.uaic.info.gitprov.models.HistoryScope;
+import ro.uaic.info.gitprov.services.CommitFilesReader;
+import ro.uaic.info.gitprov.services.CommitHistory;
+import ro.uaic.info.gitprov.services.LocalCommitSource;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocalCommitSourceTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File directory;
+
+	private String first;
+
+	private String second;
+
+	private String third;
+
+	@Before
+	public void createRepository() throws Exception {
+		directory = temporaryFolder.newFolder("repository");
+
+		try (Git git = Git.init().setDirectory(directory).call()) {
+			PersonIdent alice = new PersonIdent("alice", "alice@example.com");
+			PersonIdent bob = new PersonIdent("bob", "bob@example.com");
+
+			write("README.md", "hello\n");
+			write("src/Main.java", "class Main {}\n");
+			git.add().addFilepattern(".").call();
+			first = git.commit().setMessage("Initial commit").setAuthor(alice).setCommitter(alice).call().getName();
+
+			write("README.md", "hello\nworld\n");
+			git.add().addFilepattern(".").call();
+			second = git.commit().setMessage("Update readme").setAuthor(bob).setCommitter(bob).call().getName();
+
+			git.rm().addFilepattern("src/Main.java").call();
+			third = git.commit().setMessage("Remove main").setAuthor(alice).setCommitter(alice).call().getName();
+		}
+	}
+
+	@Test
+	public void listsCommitsFromOldestToNewest() throws Exception {
+		try (LocalCommitSource commitSource = new LocalCommitSource(directory)) {
+			List<RepositoryCommit> commits = readAll(commitSource.getCommitsSince(null));
+
+			assertEquals(3, commits.size());
+			assertEquals(first, commits.get(0).getSha());
+			assertEquals(second, commits.get(1).getSha());
+			assertEquals(third, commits.get(2).getSha());
+			assertEquals("bob", commits.get(1).getAuthor().getLogin());
+			assertEquals(first, commits.get(1).getParents().get(0).getSha());
+		}
+	}
+
+	@Test
+	public void listsOnlyCommitsAfterTheLastKnownOne() throws Exception {
+		try (LocalCommitSource commitSource = new LocalCommitSource(directory)) {
+			CommitHistory history = commitSource.getCommitsSince(first);
+
+			assertEquals(2, history.size());
+			assertEquals(second, readAll(history).get(0).getSha());
+			assertEquals(0, commitSource.getCommitsSince(third).size());
+			assertNull(commitSource.getCommitsSince("0000000000000000000000000000000000000000"));
+		}
+	}
+
+	@Test
+	public void listsOnlyCommitsWithinTheScope() throws Exception {
+		try (LocalCommitSource commitSource = new LocalCommitSource(directory)) {
+			HistoryScope range = new HistoryScope();
+			range.setRange(first + ".." + second);
+			List<RepositoryCommit> commits = readAll(commitSource.getCommits(range));
+
+			assertEquals(1, commits.size());
+			assertEquals(second, commits.get(0).getSha());
+
+			HistoryScope future = new HistoryScope();
+			future.setSince(new Date(System.currentTimeMillis() + 86400000L));
+			assertEquals(0, commitSource.getCommits(future).size());
+
+			range.setRange(third + ".." + first);
+			assertNull(commitSource.getCommits(range));
+		}
+	}
+
+	@Test
+	public void listsOnlyCommitsChangingThePath() throws Exception {
+		try (LocalCommitSource commitSource = new LocalCommitSource(directory)) {
+			HistoryScope scope = new HistoryScope();
+			scope.setPath("/src/");
+			List<RepositoryCommit> commits = readAll(commitSource.getCommits(scope));
+
+			assertEquals(2, commits.size());
+			assertEquals(first, commits.get(0).getSha());
+			assertEquals(third, commits.get(1).getSha());
+			assertTrue(scope.covers("src/Main.java"));
+			assertFalse(scope.covers("src.txt"));
+		}
+	}
+
+	@Test
+	public void findsTheLastChangeOfAFile() throws Exception {
+		try (LocalCommitSource commitSource = new LocalCommitSource(directory)) {
+			assertEquals(second, commitSource.getLastChange("README.md", third));
+			assertEquals(first, commitSource.getLastChange("src/Main.java", second));
+			assertNull(commitSource.getLastChange("missing.txt", third));
+		}
+	}
+
+	@Test
+	public void describesChangedFilesLikeTheGithubApi() throws Exception {
+		try (LocalCommitSource commitSource = new LocalCommitSource(directory)) {
+			try (CommitFilesReader reader = commitSource.readFiles(commitSource.getCommitsSince(null))) {
+				List<CommitFile> added = reader.next().getFiles();
+				assertEquals(2, added.size());
+				assertTrue(added.stream().allMatch(file -> file.getStatus().equals("added")));
+
+				CommitFile modified = reader.next().getFiles().get(0);
+				assertEquals("README.md", modified.getFilename());
+				assertEquals("modified", modified.getStatus());
+				assertEquals(1, modified.getAdditions());
+				assertEquals(0, modified.getDeletions());
+
+				RepositoryCommit last = reader.next();
+				CommitFile removed = last.getFiles().get(0);
+				assertEquals(third, last.getSha());
+				assertEquals("src/Main.java", removed.getFilename());
+				assertEquals("removed", removed.getStatus());
+				assertFalse(reader.hasNext());
+			}
+		}
+	}
+
+	@Test
+	public void collectsContributorsFromAuthors() throws Exception {
+		try (LocalCommitSource commitSource = new LocalCommitSource(directory)) {
+			List<Contributor> contributors = commitSource.getContributors();
+
+			assertEquals(2, contributors.size());
+			assertEquals("alice", contributors.get(0).getLogin());
+			assertEquals(2, contributors.get(0).getContributions());
+			assertEquals("bob@example.com", commitSource.getUser("bob").getEmail());
+		}
+	}
+
+	private List<RepositoryCommit> readAll(CommitHistory history) throws Exception {
+		List<RepositoryCommit> result = new ArrayList<>();
+		while (history.hasNext()) {
+			result.add(history.next());
+		}
+		return result;
+	}
+
+	private void write(String path, String content) throws Exception {
+		File file = new File(directory, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
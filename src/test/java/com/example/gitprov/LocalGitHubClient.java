@@ -0,0 +1,222 @@
+package com.example.gitprov;
+
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.RepositoryCommitCompare;
+import org.eclipse.egit.github.core.RequestError;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.RequestException;
+import ro.uaic.info.gitprov.models.HistoryScope;
+import ro.uaic.info.gitprov.services.CommitFilesReader;
+import ro.uaic.info.gitprov.services.CommitHistory;
+import ro.uaic.info.gitprov.services.LocalCommitSource;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * A Github client answering the requests of the Github commit source from a local repository, the way the Github API
+ * would: the commits are listed from the newest by date, the comparisons list the commits reachable from the head and
+ * not from the base from the oldest by date, and both are paged.
+ */
+public class LocalGitHubClient extends GitHubClient {
+
+	private final LocalCommitSource commitSource;
+
+	/**
+	 * Instantiates a new local Github client.
+	 *
+	 * @param commitSource the source of the history of the repository, whatever its owner and name
+	 */
+	public LocalGitHubClient(LocalCommitSource commitSource) {
+		this.commitSource = commitSource;
+	}
+
+	@Override
+	public GitHubResponse get(GitHubRequest request) throws IOException {
+		String uri = request.generateUri();
+		String[] segments = (uri.contains("?") ? uri.substring(0, uri.indexOf('?')) : uri).replaceAll("^/+", "").split("/");
+		Map<String, String> params = getParams(uri);
+
+		if (segments.length == 2 && segments[0].equals("users")) {
+			return new Response(commitSource.getUser(segments[1]), null);
+		}
+		if (segments.length < 4 || !segments[0].equals("repos")) {
+			throw notFound();
+		}
+
+		if (segments.length == 4 && segments[3].equals("contributors")) {
+			return new Response(commitSource.getContributors(), null);
+		}
+		if (segments.length == 4 && segments[3].equals("commits")) {
+			return listCommits(params);
+		}
+		if (segments.length == 5 && segments[3].equals("commits")) {
+			return new Response(getCommit(segments[4]), null);
+		}
+		if (segments.length == 5 && segments[3].equals("compare") && segments[4].contains("...")) {
+			return compare(segments[4].substring(0, segments[4].indexOf("...")), segments[4].substring(segments[4].indexOf("...") + 3), params);
+		}
+		throw notFound();
+	}
+
+	private GitHubResponse listCommits(Map<String, String> params) throws IOException {
+		HistoryScope scope = new HistoryScope();
+		scope.setHead(params.get("sha"));
+		scope.setPath(params.get("path"));
+		if (params.containsKey("since")) {
+			scope.setSince(Date.from(Instant.parse(params.get("since"))));
+		}
+		if (params.containsKey("until")) {
+			scope.setUntil(Date.from(Instant.parse(params.get("until"))));
+		}
+
+		List<RepositoryCommit> commits = readAll(commitSource.getCommits(scope));
+		Collections.reverse(commits);
+		commits.sort(Comparator.comparing((RepositoryCommit commit) -> commit.getCommit().getCommitter().getDate()).reversed());
+
+		return getPage(commits, params, page -> page);
+	}
+
+	private GitHubResponse compare(String base, String head, Map<String, String> params) throws IOException {
+		HistoryScope scope = new HistoryScope();
+		scope.setBase(base);
+		scope.setHead(head);
+
+		CommitHistory history = commitSource.getCommits(scope);
+		if (history == null) {
+			if (resolve(base) == null || resolve(head) == null) {
+				throw notFound();
+			}
+			return new Response(new RepositoryCommitCompare().setStatus("diverged").setCommits(Collections.emptyList()), null);
+		}
+
+		List<RepositoryCommit> commits = readAll(history);
+		commits.sort(Comparator.comparing(commit -> commit.getCommit().getCommitter().getDate()));
+
+		return getPage(commits, params, page -> new RepositoryCommitCompare()
+				.setStatus(commits.isEmpty() ? "identical" : "ahead")
+				.setAheadBy(commits.size())
+				.setTotalCommits(commits.size())
+				.setCommits(page));
+	}
+
+	/**
+	 * Gets a commit with its files
+	 *
+	 * @param sha the sha of the commit
+	 * @return the commit
+	 * @throws IOException if the commit is unknown
+	 */
+	private RepositoryCommit getCommit(String sha) throws IOException {
+		RepositoryCommit commit = resolve(sha);
+		if (commit == null) {
+			throw notFound();
+		}
+
+		CommitHistory history = new CommitHistory() {
+			private boolean read;
+
+			@Override
+			public int size() {
+				return 1;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return !read;
+			}
+
+			@Override
+			public RepositoryCommit next() {
+				read = true;
+				return commit;
+			}
+		};
+
+		try (CommitFilesReader reader = commitSource.readFiles(history)) {
+			return reader.next();
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Finds a commit by its sha or the name of a reference
+	 *
+	 * @param revision the sha or the name
+	 * @return the commit, or null if unknown
+	 * @throws IOException io exception
+	 */
+	private RepositoryCommit resolve(String revision) throws IOException {
+		HistoryScope scope = new HistoryScope();
+		scope.setHead(revision);
+
+		CommitHistory history = commitSource.getCommits(scope);
+		List<RepositoryCommit> commits = history == null ? Collections.emptyList() : readAll(history);
+		return commits.isEmpty() ? null : commits.get(commits.size() - 1);
+	}
+
+	private static <T> GitHubResponse getPage(List<RepositoryCommit> commits, Map<String, String> params, java.util.function.Function<List<RepositoryCommit>, T> body) {
+		int pageSize = Integer.parseInt(params.getOrDefault("per_page", "30"));
+		int page = Integer.parseInt(params.getOrDefault("page", "1"));
+		int lastPage = Math.max(1, (commits.size() + pageSize - 1) / pageSize);
+
+		List<RepositoryCommit> pageCommits = commits.subList(Math.min(commits.size(), (page - 1) * pageSize), Math.min(commits.size(), page * pageSize));
+		String link = page < lastPage ? "<https://api.github.com/page?page=" + (page + 1) + "&per_page=" + pageSize + ">; rel=\"next\", "
+				+ "<https://api.github.com/page?page=" + lastPage + "&per_page=" + pageSize + ">; rel=\"last\"" : null;
+
+		return new Response(body.apply(new ArrayList<>(pageCommits)), link);
+	}
+
+	private static List<RepositoryCommit> readAll(CommitHistory history) throws IOException {
+		List<RepositoryCommit> result = new ArrayList<>();
+		while (history.hasNext()) {
+			result.add(history.next());
+		}
+		return result;
+	}
+
+	private static Map<String, String> getParams(String uri) throws UnsupportedEncodingException {
+		Map<String, String> result = new HashMap<>();
+		if (!uri.contains("?")) {
+			return result;
+		}
+
+		for (String param : uri.substring(uri.indexOf('?') + 1).split("&")) {
+			int separator = param.indexOf('=');
+			if (separator > 0) {
+				result.put(URLDecoder.decode(param.substring(0, separator), "UTF-8"), URLDecoder.decode(param.substring(separator + 1), "UTF-8"));
+			}
+		}
+		return result;
+	}
+
+	private static RequestException notFound() {
+		return new RequestException(new RequestError(), 404);
+	}
+
+	/**
+	 * A response whose only header is the link to the other pages.
+	 */
+	private static class Response extends GitHubResponse {
+
+		private final String link;
+
+		private Response(Object body, String link) {
+			super(null, body);
+			this.link = link;
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return "Link".equals(name) ? link : null;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.example.gitprov;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.User;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ro.uaic.info.gitprov.services.CommitSource;
+import ro.uaic.info.gitprov.services.CommitSourceFactory;
+import ro.uaic.info.gitprov.services.ProvenanceService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ProvenanceServiceTests {
+
+	private static final Repository REPOSITORY = new Repository().setName("synthetic").setOwner(new User().setLogin("octo"));
+
+	private static final String PROVENANCE_NS = "http://localhost/repos/owner/octo/synthetic#";
+
+	/**
+	 * More commits than a batch of records, so the streamed documents are written in several parts.
+	 */
+	private static final int COMMITS = 250;
+
+	private ProvenanceService provenanceService;
+
+	@Before
+	public void createService() {
+		provenanceService = new ProvenanceService();
+		ReflectionTestUtils.setField(provenanceService, "commitSourceFactory", new CommitSourceFactory() {
+			@Override
+			public CommitSource getCommitSource(Repository repository) {
+				return new SyntheticCommitSource(COMMITS, 3, 5);
+			}
+		});
+	}
+
+	@Test
+	public void streamsTurtleWithTheSameTriplesAsTheWholeDocument() throws Exception {
+		Model expected = readModel(provenanceService.repositoryToDocument(REPOSITORY, PROVENANCE_NS, "application/x-turtle"), Lang.TURTLE);
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		String headSha = provenanceService.writeDocument(REPOSITORY, PROVENANCE_NS, "application/x-turtle", outputStream);
+		Model streamed = readModel(outputStream.toString("UTF-8"), Lang.TURTLE);
+
+		assertEquals(SyntheticCommitSource.getSha(COMMITS - 1), headSha);
+		assertFalse(expected.isEmpty());
+		assertTrue(expected.isIsomorphicWith(streamed));
+	}
+
+	@Test
+	public void streamsTrigWithTheSameTriplesAsTheWholeDocument() throws Exception {
+		Dataset expected = DatasetFactory.create();
+		RDFDataMgr.read(expected, new ByteArrayInputStream(provenanceService.repositoryToDocument(REPOSITORY, PROVENANCE_NS, "application/trig").getBytes(StandardCharsets.UTF_8)), Lang.TRIG);
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		provenanceService.writeDocument(REPOSITORY, PROVENANCE_NS, "application/trig", outputStream);
+		Dataset streamed = DatasetFactory.create();
+		RDFDataMgr.read(streamed, new ByteArrayInputStream(outputStream.toByteArray()), Lang.TRIG);
+
+		assertFalse(expected.getDefaultModel().isEmpty());
+		assertTrue(expected.getDefaultModel().isIsomorphicWith(streamed.getDefaultModel()));
+	}
+
+	private static Model readModel(String document, Lang lang) {
+		Model model = ModelFactory.createDefaultModel();
+		RDFDataMgr.read(model, new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), lang);
+		return model;
+	}
+}
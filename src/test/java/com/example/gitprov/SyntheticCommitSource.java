@@ -0,0 +1,227 @@
+package com.example.gitprov;
+
+import org.eclipse.egit.github.core.*;
+import ro.uaic.info.gitprov.models.HistoryScope;
+import ro.uaic.info.gitprov.services.CommitFilesReader;
+import ro.uaic.info.gitprov.services.CommitHistory;
+import ro.uaic.info.gitprov.services.CommitSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A linear history of a given size, generated as it is read. Commit i changes the files i * filesPerCommit up to
+ * (i + 1) * filesPerCommit - 1, modulo the number of files, which is a quarter of the changes so every file is changed
+ * about four times: a file is added by its first change and modified by the other ones. The commits are authored by
+ * the contributors in turn, a minute apart. The same sizes always give the same history.
+ */
+public class SyntheticCommitSource implements CommitSource {
+
+	private static final long FIRST_COMMIT_TIME = 1500000000000L;
+
+	private final int commits;
+
+	private final int filesPerCommit;
+
+	private final int contributors;
+
+	private final int files;
+
+	/**
+	 * Instantiates a new synthetic commit source.
+	 *
+	 * @param commits        the number of commits
+	 * @param filesPerCommit the number of files changed by every commit
+	 * @param contributors   the number of contributors
+	 */
+	public SyntheticCommitSource(int commits, int filesPerCommit, int contributors) {
+		this.commits = commits;
+		this.filesPerCommit = filesPerCommit;
+		this.contributors = contributors;
+		this.files = Math.max(filesPerCommit, commits * filesPerCommit / 4);
+	}
+
+	public static String getSha(int commit) {
+		return String.format("%040x", commit + 1);
+	}
+
+	public static String getLogin(int contributor) {
+		return "contributor-" + contributor;
+	}
+
+	public static String getFilename(int file) {
+		return "src/module" + (file % 16) + "/File" + file + ".java";
+	}
+
+	public static Date getDate(int commit) {
+		return new Date(FIRST_COMMIT_TIME + commit * 60000L);
+	}
+
+	public int getCommitCount() {
+		return commits;
+	}
+
+	@Override
+	public List<Contributor> getContributors() {
+		List<Contributor> result = new ArrayList<>();
+		for (int i = 0; i < contributors; i++) {
+			result.add(new Contributor()
+					.setLogin(getLogin(i))
+					.setType("User")
+					.setContributions(commits / contributors + (i < commits % contributors ? 1 : 0)));
+		}
+		return result;
+	}
+
+	@Override
+	public User getUser(String login) {
+		return newUser(login);
+	}
+
+	/**
+	 * Builds the profile of a user, the same for every history
+	 *
+	 * @param login the login of the user
+	 * @return the user
+	 */
+	public static User newUser(String login) {
+		return new User()
+				.setLogin(login)
+				.setName("Contributor " + login.substring(login.indexOf('-') + 1))
+				.setEmail(login + "@example.com")
+				.setAvatarUrl("https://avatars.example.com/" + login)
+				.setType("User");
+	}
+
+	@Override
+	public String getHeadSha() {
+		return commits == 0 ? null : getSha(commits - 1);
+	}
+
+	@Override
+	public CommitHistory getCommitsSince(String lastCommitSha) {
+		HistoryScope scope = new HistoryScope();
+		scope.setBase(lastCommitSha);
+		return getCommits(scope);
+	}
+
+	/**
+	 * Lists the commits after the base of a scope and up to its head, the time window and the path being ignored
+	 *
+	 * @param scope the scope
+	 * @return the history, or null if the base or the head is not a commit of the history
+	 */
+	@Override
+	public CommitHistory getCommits(HistoryScope scope) {
+		int first = scope.getBase() == null ? 0 : indexOf(scope.getBase()) + 1;
+		int end = scope.getHead() == null ? commits : indexOf(scope.getHead()) + 1;
+		if (first < 0 || end < 0 || first > end) {
+			return null;
+		}
+
+		return new CommitHistory() {
+			private int next = first;
+
+			@Override
+			public int size() {
+				return end - first;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < end;
+			}
+
+			@Override
+			public RepositoryCommit next() {
+				return getRepositoryCommit(next++);
+			}
+		};
+	}
+
+	@Override
+	public String getLastChange(String filename, String sha) {
+		int file = Integer.parseInt(filename.substring(filename.lastIndexOf("/File") + 5, filename.length() - 5));
+		int lastChange = indexOf(sha) * filesPerCommit + filesPerCommit - 1;
+		if (lastChange < file) {
+			return null;
+		}
+
+		return getSha((file + (lastChange - file) / files * files) / filesPerCommit);
+	}
+
+	@Override
+	public CommitFilesReader readFiles(CommitHistory history) {
+		return new CommitFilesReader() {
+			@Override
+			public boolean hasNext() throws IOException {
+				return history.hasNext();
+			}
+
+			@Override
+			public RepositoryCommit next() throws IOException {
+				return history.next();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Gets the index of a commit of the history
+	 *
+	 * @param sha the sha of the commit
+	 * @return the index, or -1 if the commit is not part of the history
+	 */
+	public int indexOf(String sha) {
+		try {
+			int commit = Integer.parseInt(sha, 16) - 1;
+			return commit < commits && sha.equals(getSha(commit)) ? commit : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Builds a commit of the history, with its files
+	 *
+	 * @param commit the index of the commit, from the oldest
+	 * @return the commit
+	 */
+	public RepositoryCommit getRepositoryCommit(int commit) {
+		String login = getLogin(commit % contributors);
+		Date date = getDate(commit);
+		CommitUser commitUser = new CommitUser().setName(login).setEmail(login + "@example.com").setDate(date);
+
+		List<CommitFile> commitFiles = new ArrayList<>();
+		for (int i = 0; i < filesPerCommit; i++) {
+			int change = commit * filesPerCommit + i;
+			int additions = change % 40;
+			int deletions = change % 7;
+			commitFiles.add(new CommitFile()
+					.setFilename(getFilename(change % files))
+					.setStatus(change < files ? "added" : "modified")
+					.setAdditions(additions)
+					.setDeletions(deletions)
+					.setChanges(additions + deletions));
+		}
+
+		List<Commit> parents = commit == 0 ? Collections.emptyList() : Collections.singletonList(new Commit().setSha(getSha(commit - 1)));
+
+		return new RepositoryCommit()
+				.setSha(getSha(commit))
+				.setCommit(new Commit().setSha(getSha(commit)).setMessage("Change " + commit).setAuthor(commitUser).setCommitter(commitUser))
+				.setAuthor(new User().setLogin(login))
+				.setParents(parents)
+				.setFiles(commitFiles);
+	}
+}